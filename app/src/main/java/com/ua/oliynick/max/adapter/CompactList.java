@@ -0,0 +1,199 @@
+package com.ua.oliynick.max.adapter;
+
+import com.ua.oliynick.max.adapter.util.MemoryLayout;
+import com.ua.oliynick.max.adapter.util.Precondition;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * {@link List} implementation tuned for large append-heavy data sets. Items are stored
+ * in fixed size chunks, so per-item overhead is a single reference, about 4 bytes, just like
+ * for {@link java.util.ArrayList} without spare capacity. Growing the list allocates a new chunk
+ * instead of copying whole backing array, so there is neither transient doubling of memory
+ * nor unused capacity of up to a half of list size, unused capacity never exceeds two chunks
+ * </p>
+ * <p>
+ * Positional access runs O(1), insertion and removal run O(n) just like for
+ * {@link java.util.ArrayList}. To use this list with {@link SortedAdapter} override
+ * {@link SortedAdapter#createList()}
+ * </p>
+ * <p>
+ * This class isn't thread safe
+ * </p>
+ */
+public final class CompactList<T> extends AbstractList<T> implements RandomAccess {
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private Object[][] items = new Object[0][];
+    // number of allocated chunks
+    private int chunks;
+    private int size;
+
+    public CompactList() {
+    }
+
+    public CompactList(@NotNull Collection<? extends T> items) {
+        addAll(Precondition.isNotNull(items));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index, size);
+        return (T) items[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T element) {
+        checkIndex(index, size);
+
+        val chunk = items[index >>> CHUNK_SHIFT];
+        val previous = (T) chunk[index & CHUNK_MASK];
+
+        chunk[index & CHUNK_MASK] = element;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        checkIndex(index, size + 1);
+        ensureChunkFor(size);
+
+        val first = index >>> CHUNK_SHIFT;
+        // shifts items right starting from the last chunk, the last
+        // item of each chunk is carried into the next one
+        for (var chunk = size >>> CHUNK_SHIFT; chunk >= first; --chunk) {
+            val from = chunk == first ? index & CHUNK_MASK : 0;
+            val to = chunk == size >>> CHUNK_SHIFT ? size & CHUNK_MASK : CHUNK_MASK;
+
+            System.arraycopy(items[chunk], from, items[chunk], from + 1, to - from);
+
+            if (chunk > first) {
+                items[chunk][0] = items[chunk - 1][CHUNK_MASK];
+            }
+        }
+
+        items[first][index & CHUNK_MASK] = element;
+        ++size;
+        ++modCount;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        checkIndex(index, size);
+
+        val first = index >>> CHUNK_SHIFT;
+        val last = (size - 1) >>> CHUNK_SHIFT;
+        val previous = (T) items[first][index & CHUNK_MASK];
+        // shifts items left, the first item of each
+        // chunk is carried into the previous one
+        for (var chunk = first; chunk <= last; ++chunk) {
+            val from = chunk == first ? index & CHUNK_MASK : 0;
+            val to = chunk == last ? (size - 1) & CHUNK_MASK : CHUNK_MASK;
+
+            System.arraycopy(items[chunk], from + 1, items[chunk], from, to - from);
+
+            if (chunk < last) {
+                items[chunk][CHUNK_MASK] = items[chunk + 1][0];
+            }
+        }
+
+        items[last][(size - 1) & CHUNK_MASK] = null;
+        --size;
+        ++modCount;
+        trimChunks();
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        items = new Object[0][];
+        chunks = size = 0;
+        ++modCount;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        if (size != 0) {
+            return super.addAll(c);
+        }
+
+        val source = c.toArray();
+
+        if (source.length == 0) {
+            return false;
+        }
+        // fills chunks in bulk
+        for (var from = 0; from < source.length; from += CHUNK_SIZE) {
+            ensureChunkFor(from);
+            System.arraycopy(source, from, items[from >>> CHUNK_SHIFT], 0, Math.min(CHUNK_SIZE, source.length - from));
+        }
+
+        size = source.length;
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * @return estimated retained size of this list in bytes excluding
+     * items themselves, see {@link MemoryLayout}
+     */
+    public long estimateBytes() {
+        // items, chunks and size fields plus AbstractList.modCount
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 12) + MemoryLayout.referenceArray(items.length)
+                + chunks * MemoryLayout.referenceArray(CHUNK_SIZE);
+    }
+
+    private void ensureChunkFor(int index) {
+        val chunk = index >>> CHUNK_SHIFT;
+
+        if (chunk < chunks) {
+            return;
+        }
+
+        if (chunk == items.length) {
+            // chunk directory is tiny, so it simply doubles
+            items = Arrays.copyOf(items, Math.max(4, items.length << 1));
+        }
+
+        items[chunk] = new Object[CHUNK_SIZE];
+        chunks = chunk + 1;
+    }
+
+    private void trimChunks() {
+        // keeps one spare chunk, so that alternating insertions and
+        // removals on a chunk boundary don't allocate
+        val used = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+
+        while (chunks > used + 1) {
+            items[--chunks] = null;
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + bound);
+        }
+    }
+
+}
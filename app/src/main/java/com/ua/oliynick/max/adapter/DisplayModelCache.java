@@ -0,0 +1,222 @@
+package com.ua.oliynick.max.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.ua.oliynick.max.adapter.util.BackgroundExecutors;
+import com.ua.oliynick.max.adapter.util.LongHashMap;
+import com.ua.oliynick.max.adapter.util.LongHashSet;
+import com.ua.oliynick.max.adapter.util.MemoryLayout;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * LRU cache of display models, see {@link ViewHolderAdapter#onCreateDisplayModel(HasKey)}.
+ * Models are indexed by item keys and remember item they were created for, so model
+ * created for a replaced item is never returned even if it was put into the cache after the
+ * item had been replaced.
+ * </p>
+ * <p>
+ * Cache hits don't allocate, keys are kept unboxed and entries form an intrusive
+ * doubly linked list ordered by access time
+ * </p>
+ * <p>
+ * All methods must be called from the main thread
+ * </p>
+ */
+final class DisplayModelCache<T extends HasKey> {
+
+    private static final class Entry {
+
+        final long key;
+        Object item;
+        Object model;
+        // neighbours in access order, head is the most recently used one
+        Entry prev, next;
+
+        Entry(long key) {
+            this.key = key;
+        }
+    }
+
+    // marks models which couldn't be created on a background thread
+    private static final Object FAILED = new Object();
+
+    private final LongHashMap<Entry> entries;
+    private final int maxSize;
+    private Entry head, tail;
+    // keys whose models are being created on a background thread
+    private final LongHashSet pending = new LongHashSet();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final int prefetchDistance;
+
+    DisplayModelCache(int maxSize, int prefetchDistance) {
+        this.entries = new LongHashMap<>(Math.min(maxSize, 1024));
+        this.maxSize = maxSize;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    int getPrefetchDistance() {
+        return prefetchDistance;
+    }
+
+    boolean contains(@NotNull T item) {
+        val entry = entries.get(item.getViewId());
+
+        return entry != null && entry.item == item;
+    }
+
+
+    /**
+     * Returns model for the given item, model is created on
+     * the calling thread if it isn't cached
+     */
+    @Nullable
+    Object get(@NotNull T item, @NotNull ViewHolderAdapter<T> viewHolder) {
+        val entry = entries.get(item.getViewId());
+
+        if (entry != null && entry.item == item) {
+            moveToHead(entry);
+            return entry.model;
+        }
+
+        val model = viewHolder.onCreateDisplayModel(item);
+
+        put(item.getViewId(), item, model);
+        return model;
+    }
+
+    /**
+     * Creates model for the given item on a background thread
+     * unless it's already cached or is being created. If model creation
+     * fails, then nothing is cached and model is created again on bind, so
+     * that exception is thrown on the main thread
+     */
+    void prefetch(@NotNull final T item, @NotNull final ViewHolderAdapter<T> viewHolder) {
+        val key = item.getViewId();
+
+        if (contains(item) || !pending.add(key)) {
+            return;
+        }
+
+        BackgroundExecutors.prefetch().execute(new Runnable() {
+            @Override
+            public void run() {
+                val model = tryCreateDisplayModel(item, viewHolder);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        pending.remove(key);
+
+                        if (model != FAILED) {
+                            put(key, item, model);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    void invalidate(long key) {
+        val entry = entries.remove(key);
+
+        if (entry != null) {
+            unlink(entry);
+        }
+    }
+
+    /**
+     * @return estimated retained size of this cache in bytes excluding
+     * models themselves, see {@link MemoryLayout}
+     */
+    long estimateBytes() {
+        // key and four references
+        val entry = MemoryLayout.object(8 + 4 * MemoryLayout.REFERENCE);
+
+        return entries.estimateBytes() + pending.estimateBytes() + entries.size() * entry;
+    }
+
+    void clear() {
+        entries.clear();
+        pending.clear();
+        head = tail = null;
+    }
+
+    private void put(long key, Object item, Object model) {
+        var entry = entries.get(key);
+
+        if (entry == null) {
+            entry = new Entry(key);
+            entries.put(key, entry);
+
+            if (entries.size() > maxSize) {
+                // evicts the least recently used entry
+                entries.remove(tail.key);
+                unlink(tail);
+            }
+        } else {
+            unlink(entry);
+        }
+
+        entry.item = item;
+        entry.model = model;
+        linkFirst(entry);
+    }
+
+    /**
+     * @return created model or {@link #FAILED}, so that exception doesn't
+     * kill the worker thread
+     */
+    private static <T extends HasKey> Object tryCreateDisplayModel(T item, ViewHolderAdapter<T> viewHolder) {
+        try {
+            return viewHolder.onCreateDisplayModel(item);
+        } catch (RuntimeException e) {
+            return FAILED;
+        }
+    }
+
+    private void moveToHead(Entry entry) {
+        if (entry != head) {
+            unlink(entry);
+            linkFirst(entry);
+        }
+    }
+
+    private void linkFirst(Entry entry) {
+        entry.prev = null;
+        entry.next = head;
+
+        if (head != null) {
+            head.prev = entry;
+        }
+
+        head = entry;
+
+        if (tail == null) {
+            tail = entry;
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev == null) {
+            head = entry.next;
+        } else {
+            entry.prev.next = entry.next;
+        }
+
+        if (entry.next == null) {
+            tail = entry.prev;
+        } else {
+            entry.next.prev = entry.prev;
+        }
+
+        entry.prev = entry.next = null;
+    }
+
+}
@@ -0,0 +1,484 @@
+package com.ua.oliynick.max.adapter;
+
+import com.ua.oliynick.max.adapter.util.LongHashMap;
+import com.ua.oliynick.max.adapter.util.LongHashSet;
+import com.ua.oliynick.max.adapter.util.MemoryLayout;
+
+import java.util.Random;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * Index of groups of adjacent items, see {@link GroupKeyProvider}. Groups are
+ * stored in a treap ordered by position in the data set, each node is augmented
+ * with total number of items and number of visible items in its subtree. Collapsed
+ * group shows its first item only.
+ * </p>
+ * <p>
+ * Mapping between data set and visible positions, insertion and removal of items
+ * and collapsing or expanding of a group run O(log(g)), where g is number of groups
+ * </p>
+ * <p>
+ * This class isn't thread safe
+ * </p>
+ */
+final class GroupIndex {
+
+    /**
+     * Outcomes of insertion and removal: item became or was visible,
+     * item is hidden inside a collapsed group or item replaced
+     * visible head of a collapsed group
+     */
+    static final int VISIBLE = 0, HIDDEN = 1, HEAD_REPLACED = 2;
+
+    private static final class Node {
+
+        final long key;
+        final int priority;
+        int size;
+        boolean expanded;
+        Node left, right, parent;
+        // totals over subtree rooted at this node
+        int sumSize, sumVisible;
+
+        Node(long key, int priority, boolean expanded) {
+            this.key = key;
+            this.priority = priority;
+            this.expanded = expanded;
+        }
+
+        int visible() {
+            return expanded ? size : Math.min(size, 1);
+        }
+    }
+
+    private final LongHashMap<Node> nodes = new LongHashMap<>();
+    // collapsed state survives group removal and index rebuilding
+    private final LongHashSet collapsed = new LongHashSet();
+    private final Random random = new Random();
+    private Node root;
+    // the last appended node, used while rebuilding
+    private Node last;
+    // results of the last lookup or split
+    private int offset;
+    private Node splitLeft, splitRight;
+
+    int dataSize() {
+        return GroupIndex.sumSize(root);
+    }
+
+    int visibleSize() {
+        return GroupIndex.sumVisible(root);
+    }
+
+    int groupCount() {
+        return nodes.size();
+    }
+
+    boolean contains(long key) {
+        return nodes.containsKey(key);
+    }
+
+    boolean isExpanded(long key) {
+        return !collapsed.contains(key);
+    }
+
+    /**
+     * @return number of items in group or 0 if there is no such group
+     */
+    int groupSize(long key) {
+        val node = nodes.get(key);
+
+        return node == null ? 0 : node.size;
+    }
+
+    /**
+     * @return data set position of the first item of the group
+     */
+    int dataStart(long key) {
+        return dataStart(nodes.get(key));
+    }
+
+    /**
+     * @return visible position of the first item of the group
+     */
+    int visibleStart(long key) {
+        var node = nodes.get(key);
+        var start = GroupIndex.sumVisible(node.left);
+
+        for (var parent = node.parent; parent != null; node = parent, parent = parent.parent) {
+            if (parent.right == node) {
+                start += GroupIndex.sumVisible(parent.left) + parent.visible();
+            }
+        }
+
+        return start;
+    }
+
+    /**
+     * @return data set position of the first item of group which
+     * contains item on the given data set position
+     */
+    int groupStart(int dataPosition) {
+        nodeAt(dataPosition);
+        return dataPosition - offset;
+    }
+
+    /**
+     * @return key of the group which contains item on the given data set position
+     */
+    long groupKeyAt(int dataPosition) {
+        return nodeAt(dataPosition).key;
+    }
+
+    /**
+     * Changes group state, state of an absent group is remembered
+     * and applied once the group appears
+     *
+     * @return true if visibility of items of an existing group changed
+     */
+    boolean setExpanded(long key, boolean expanded) {
+        if (expanded) {
+            collapsed.remove(key);
+        } else {
+            collapsed.add(key);
+        }
+
+        val node = nodes.get(key);
+
+        if (node == null || node.expanded == expanded) {
+            return false;
+        }
+
+        node.expanded = expanded;
+        GroupIndex.updateUp(node);
+        return true;
+    }
+
+    /**
+     * @return visible position for the given data set position or
+     * -1 if item is hidden inside a collapsed group
+     */
+    int toVisible(int dataPosition) {
+        var position = dataPosition;
+        var visible = 0;
+
+        for (var node = root; ; ) {
+            val leftSize = GroupIndex.sumSize(node.left);
+
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position < leftSize + node.size) {
+                val offset = position - leftSize;
+
+                visible += GroupIndex.sumVisible(node.left);
+
+                if (node.expanded) {
+                    return visible + offset;
+                }
+
+                return offset == 0 ? visible : -1;
+            } else {
+                position -= leftSize + node.size;
+                visible += GroupIndex.sumVisible(node.left) + node.visible();
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * @return data set position for the given visible position
+     */
+    int toData(int visiblePosition) {
+        var position = visiblePosition;
+        var data = 0;
+
+        for (var node = root; ; ) {
+            val leftVisible = GroupIndex.sumVisible(node.left);
+
+            if (position < leftVisible) {
+                node = node.left;
+            } else if (position < leftVisible + node.visible()) {
+                return data + GroupIndex.sumSize(node.left) + position - leftVisible;
+            } else {
+                position -= leftVisible + node.visible();
+                data += GroupIndex.sumSize(node.left) + node.size;
+                node = node.right;
+            }
+        }
+    }
+
+    /**
+     * Registers item inserted at the given data set position
+     *
+     * @return {@link #VISIBLE}, {@link #HIDDEN} or {@link #HEAD_REPLACED}
+     */
+    int insert(int dataPosition, long key) {
+        val size = dataSize();
+        val prev = dataPosition > 0 ? nodeAt(dataPosition - 1) : null;
+        val next = dataPosition < size ? nodeAt(dataPosition) : null;
+
+        if (prev != null && prev.key == key) {
+            // item goes after the first one
+            GroupIndex.grow(prev, 1);
+            return prev.expanded ? VISIBLE : HIDDEN;
+        }
+
+        if (next != null && next.key == key) {
+            // item becomes the first one in its group
+            GroupIndex.grow(next, 1);
+            return next.expanded || next.size == 1 ? VISIBLE : HEAD_REPLACED;
+        }
+
+        if (prev != null && prev == next) {
+            throw new IllegalStateException("Group items must be adjacent, item of group "
+                    + key + " was inserted inside group " + prev.key);
+        }
+
+        val node = newNode(key);
+
+        split(root, dataPosition);
+        root = GroupIndex.merge(GroupIndex.merge(splitLeft, node), splitRight);
+        root.parent = null;
+        splitLeft = splitRight = null;
+        return VISIBLE;
+    }
+
+    /**
+     * Checks that item of the given group can be inserted at the given data set
+     * position without splitting any group, index isn't changed
+     *
+     * @param removedPosition data set position of item removed before insertion or -1,
+     *                        insertion position is counted after removal
+     * @throws IllegalStateException if insertion would split a group
+     */
+    void checkInsertion(int dataPosition, long key, int removedPosition) {
+        val removed = removedPosition < 0 ? null : nodeAt(removedPosition);
+        val size = removed == null ? dataSize() : dataSize() - 1;
+        val prev = dataPosition > 0 ? nodeAt(GroupIndex.beforeRemoval(dataPosition - 1, removedPosition)) : null;
+        val next = dataPosition < size ? nodeAt(GroupIndex.beforeRemoval(dataPosition, removedPosition)) : null;
+
+        if ((prev != null && prev.key == key) || (next != null && next.key == key)) {
+            return;
+        }
+
+        if (prev != null && prev == next) {
+            throw new IllegalStateException("Group items must be adjacent, item of group "
+                    + key + " was inserted inside group " + prev.key);
+        }
+        // removal of the only item drops its group
+        if (nodes.containsKey(key) && (removed == null || removed.key != key || removed.size > 1)) {
+            throw new IllegalStateException("Group items must be adjacent, group " + key + " is split");
+        }
+    }
+
+    /**
+     * Registers removal of item at the given data set position
+     *
+     * @return {@link #VISIBLE}, {@link #HIDDEN} or {@link #HEAD_REPLACED}
+     */
+    int remove(int dataPosition) {
+        val node = nodeAt(dataPosition);
+        val result = node.expanded || node.size == 1
+                ? VISIBLE : (offset == 0 ? HEAD_REPLACED : HIDDEN);
+
+        if (node.size == 1) {
+            delete(node);
+        } else {
+            GroupIndex.grow(node, -1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Appends item to the end of index, used to rebuild index in linear time
+     */
+    void append(long key) {
+        if (last != null && last.key == key) {
+            GroupIndex.grow(last, 1);
+            return;
+        }
+
+        val node = newNode(key);
+
+        root = GroupIndex.merge(root, node);
+        root.parent = null;
+        last = node;
+    }
+
+    /**
+     * @return estimated retained size of this index in bytes, see {@link MemoryLayout}
+     */
+    long estimateBytes() {
+        // key, priority, size, expanded, sums and three references
+        val node = MemoryLayout.object(25 + 3 * MemoryLayout.REFERENCE);
+
+        return MemoryLayout.object(7 * MemoryLayout.REFERENCE + 4) + nodes.estimateBytes()
+                + collapsed.estimateBytes() + nodes.size() * node;
+    }
+
+    /**
+     * Removes all groups, collapsed state is kept
+     */
+    void clear() {
+        nodes.clear();
+        root = last = null;
+    }
+
+    private Node newNode(long key) {
+        if (nodes.containsKey(key)) {
+            throw new IllegalStateException("Group items must be adjacent, group " + key + " is split");
+        }
+
+        val node = new Node(key, random.nextInt(), !collapsed.contains(key));
+
+        node.size = node.sumSize = 1;
+        node.sumVisible = 1;
+        nodes.put(key, node);
+        return node;
+    }
+
+    private Node nodeAt(int dataPosition) {
+        var position = dataPosition;
+
+        for (var node = root; ; ) {
+            val leftSize = GroupIndex.sumSize(node.left);
+
+            if (position < leftSize) {
+                node = node.left;
+            } else if (position < leftSize + node.size) {
+                offset = position - leftSize;
+                return node;
+            } else {
+                position -= leftSize + node.size;
+                node = node.right;
+            }
+        }
+    }
+
+    private int dataStart(Node node) {
+        var start = GroupIndex.sumSize(node.left);
+
+        for (var parent = node.parent; parent != null; node = parent, parent = parent.parent) {
+            if (parent.right == node) {
+                start += GroupIndex.sumSize(parent.left) + parent.size;
+            }
+        }
+
+        return start;
+    }
+
+    private void delete(Node node) {
+        val parent = node.parent;
+        val merged = GroupIndex.merge(node.left, node.right);
+
+        if (parent == null) {
+            root = merged;
+        } else if (parent.left == node) {
+            parent.left = merged;
+        } else {
+            parent.right = merged;
+        }
+
+        if (merged != null) {
+            merged.parent = parent;
+        }
+
+        if (last == node) {
+            last = null;
+        }
+
+        nodes.remove(node.key);
+        GroupIndex.updateUp(parent);
+    }
+
+    /**
+     * Splits tree by data set position which must be a group boundary,
+     * results are stored into {@link #splitLeft} and {@link #splitRight}
+     */
+    private void split(Node node, int dataPosition) {
+        if (node == null) {
+            splitLeft = splitRight = null;
+            return;
+        }
+
+        val leftSize = GroupIndex.sumSize(node.left);
+
+        if (dataPosition <= leftSize) {
+            split(node.left, dataPosition);
+            node.left = splitRight;
+            GroupIndex.update(node);
+            splitRight = node;
+        } else {
+            split(node.right, dataPosition - leftSize - node.size);
+            node.right = splitLeft;
+            GroupIndex.update(node);
+            splitLeft = node;
+        }
+
+        node.parent = null;
+    }
+
+    /**
+     * @return position which item on the given position after removal had before it
+     */
+    private static int beforeRemoval(int dataPosition, int removedPosition) {
+        return removedPosition < 0 || dataPosition < removedPosition ? dataPosition : dataPosition + 1;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = GroupIndex.merge(left.right, right);
+            GroupIndex.update(left);
+            return left;
+        }
+
+        right.left = GroupIndex.merge(left, right.left);
+        GroupIndex.update(right);
+        return right;
+    }
+
+    private static void grow(Node node, int delta) {
+        node.size += delta;
+        GroupIndex.updateUp(node);
+    }
+
+    private static void updateUp(Node node) {
+        for (; node != null; node = node.parent) {
+            GroupIndex.update(node);
+        }
+    }
+
+    private static void update(Node node) {
+        node.sumSize = GroupIndex.sumSize(node.left) + node.size + GroupIndex.sumSize(node.right);
+        node.sumVisible = GroupIndex.sumVisible(node.left) + node.visible() + GroupIndex.sumVisible(node.right);
+
+        if (node.left != null) {
+            node.left.parent = node;
+        }
+
+        if (node.right != null) {
+            node.right.parent = node;
+        }
+    }
+
+    private static int sumSize(Node node) {
+        return node == null ? 0 : node.sumSize;
+    }
+
+    private static int sumVisible(Node node) {
+        return node == null ? 0 : node.sumVisible;
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.ua.oliynick.max.adapter;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Splits sorted data set into groups, for example, comments of the same
+ * thread or posts published the same day. Items of the same group must be
+ * adjacent according to the adapter's comparator
+ */
+public interface GroupKeyProvider<T> {
+
+    long getGroupKey(@NotNull T item);
+
+}
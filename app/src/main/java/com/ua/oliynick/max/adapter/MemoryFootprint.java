@@ -0,0 +1,67 @@
+package com.ua.oliynick.max.adapter;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+import lombok.val;
+
+/**
+ * <p>
+ * Estimated memory retained by adapter's structures, see {@link SortedAdapter#getMemoryFootprint()}.
+ * Items and display models themselves aren't taken into account, so the report shows
+ * the adapter's own overhead.
+ * </p>
+ * <p>
+ * Estimations are based on {@link com.ua.oliynick.max.adapter.util.MemoryLayout}
+ * and are approximate
+ * </p>
+ */
+public final class MemoryFootprint {
+
+    private final Map<String, Long> structures;
+    private final int itemCount;
+
+    MemoryFootprint(@NotNull Map<String, Long> structures, int itemCount) {
+        this.structures = Collections.unmodifiableMap(structures);
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * @return estimated bytes per structure name in reporting order
+     */
+    @NotNull
+    public Map<String, Long> getStructures() {
+        return structures;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public long getTotalBytes() {
+        long total = 0;
+
+        for (val bytes : structures.values()) {
+            total += bytes;
+        }
+
+        return total;
+    }
+
+    /**
+     * @return estimated overhead per data set item
+     */
+    public double getBytesPerItem() {
+        return itemCount == 0 ? 0 : (double) getTotalBytes() / itemCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ENGLISH, "MemoryFootprint{items=%d, total=%d, perItem=%.1f, structures=%s}",
+                itemCount, getTotalBytes(), getBytesPerItem(), structures);
+    }
+
+}
@@ -0,0 +1,479 @@
+package com.ua.oliynick.max.adapter;
+
+import com.ua.oliynick.max.adapter.util.MemoryLayout;
+import com.ua.oliynick.max.adapter.util.Precondition;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * {@link List} implementation which is backed by a persistent structurally-shared
+ * tree of chunks. Each mutation copies only nodes on the path from the root to the
+ * affected chunk, that is O(log(n)) nodes, and keeps the rest of the tree shared, so taking
+ * an immutable snapshot via {@link #snapshot()} runs O(1).
+ * </p>
+ * <p>
+ * Snapshots can be safely read from any thread without locking while this list
+ * is being mutated. The list itself isn't thread safe. Positional access costs O(log(n)),
+ * which makes binary search run O(log2(n)^2), so use this list only if you need snapshots.
+ * To use it with {@link SortedAdapter} override {@link SortedAdapter#createList()}
+ * </p>
+ */
+public final class SnapshotList<T> extends AbstractList<T> implements RandomAccess {
+
+    // max number of items in a chunk and of children in a branch
+    private static final int MAX_WIDTH = 32;
+
+    private Node root = Leaf.EMPTY;
+
+    public SnapshotList() {
+    }
+
+    public SnapshotList(@NotNull Collection<? extends T> items) {
+        addAll(Precondition.isNotNull(items));
+    }
+
+    /**
+     * Returns immutable list which reflects current state of this list,
+     * later mutations of this list aren't visible through the returned list
+     *
+     * @return immutable snapshot of this list
+     */
+    @NotNull
+    public List<T> snapshot() {
+        return new Snapshot<>(root);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index, root.size);
+        return (T) root.get(index);
+    }
+
+    @Override
+    public int size() {
+        return root.size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T element) {
+        checkIndex(index, root.size);
+
+        val previous = (T) root.get(index);
+
+        root = root.set(index, element);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        checkIndex(index, root.size + 1);
+
+        val result = root.insert(index, element);
+
+        root = result.length == 1 ? result[0] : Branch.of(result);
+        ++modCount;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        checkIndex(index, root.size);
+
+        val previous = (T) root.get(index);
+        var newRoot = root.remove(index);
+        // shrinks tree height if possible
+        while (newRoot instanceof Branch && ((Branch) newRoot).children.length == 1) {
+            newRoot = ((Branch) newRoot).children[0];
+        }
+
+        root = newRoot == null ? Leaf.EMPTY : newRoot;
+        ++modCount;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        root = Leaf.EMPTY;
+        ++modCount;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        if (root.size != 0) {
+            return super.addAll(c);
+        }
+        // builds balanced tree bottom-up in linear time
+        val items = c.toArray();
+
+        if (items.length == 0) {
+            return false;
+        }
+
+        root = SnapshotList.build(items);
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * @return estimated retained size of this list in bytes excluding items
+     * themselves and nodes retained only by snapshots, see {@link MemoryLayout}
+     */
+    public long estimateBytes() {
+        // root field plus AbstractList.modCount
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 4) + SnapshotList.estimateBytes(root);
+    }
+
+    private static long estimateBytes(Node node) {
+        if (node instanceof Leaf) {
+            // size and items fields
+            return MemoryLayout.object(4 + MemoryLayout.REFERENCE)
+                    + MemoryLayout.referenceArray(((Leaf) node).items.length);
+        }
+
+        val branch = (Branch) node;
+        var bytes = MemoryLayout.object(4 + 2 * MemoryLayout.REFERENCE)
+                + MemoryLayout.referenceArray(branch.children.length) + MemoryLayout.array(branch.offsets.length, 4);
+
+        for (val child : branch.children) {
+            bytes += SnapshotList.estimateBytes(child);
+        }
+
+        return bytes;
+    }
+
+    private static Node build(Object[] items) {
+        var level = new Node[(items.length + MAX_WIDTH - 1) / MAX_WIDTH];
+
+        for (var i = 0; i < level.length; ++i) {
+            val from = i * MAX_WIDTH;
+            val chunk = new Object[Math.min(MAX_WIDTH, items.length - from)];
+
+            System.arraycopy(items, from, chunk, 0, chunk.length);
+            level[i] = new Leaf(chunk);
+        }
+
+        while (level.length > 1) {
+            val parents = new Node[(level.length + MAX_WIDTH - 1) / MAX_WIDTH];
+
+            for (var i = 0; i < parents.length; ++i) {
+                val from = i * MAX_WIDTH;
+                val children = new Node[Math.min(MAX_WIDTH, level.length - from)];
+
+                System.arraycopy(level, from, children, 0, children.length);
+                parents[i] = Branch.of(children);
+            }
+
+            level = parents;
+        }
+
+        return level[0];
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + bound);
+        }
+    }
+
+    private static final class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+
+        private final Node root;
+
+        Snapshot(Node root) {
+            this.root = root;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            checkIndex(index, root.size);
+            return (T) root.get(index);
+        }
+
+        @Override
+        public int size() {
+            return root.size;
+        }
+    }
+
+    /**
+     * Immutable tree node, every mutation returns new node
+     */
+    private abstract static class Node {
+
+        final int size;
+
+        Node(int size) {
+            this.size = size;
+        }
+
+        abstract Object get(int index);
+
+        abstract Node set(int index, Object item);
+
+        /**
+         * @return either single new node or two nodes if node was split
+         */
+        abstract Node[] insert(int index, Object item);
+
+        /**
+         * @return new node or null if node became empty
+         */
+        abstract Node remove(int index);
+
+        abstract int width();
+
+    }
+
+    private static final class Leaf extends Node {
+
+        static final Leaf EMPTY = new Leaf(new Object[0]);
+
+        final Object[] items;
+
+        Leaf(Object[] items) {
+            super(items.length);
+            this.items = items;
+        }
+
+        @Override
+        Object get(int index) {
+            return items[index];
+        }
+
+        @Override
+        Node set(int index, Object item) {
+            val copy = items.clone();
+
+            copy[index] = item;
+            return new Leaf(copy);
+        }
+
+        @Override
+        Node[] insert(int index, Object item) {
+            val size = items.length;
+            val copy = new Object[size + 1];
+
+            System.arraycopy(items, 0, copy, 0, index);
+            copy[index] = item;
+            System.arraycopy(items, index, copy, index + 1, size - index);
+
+            if (copy.length <= MAX_WIDTH) {
+                return new Node[]{new Leaf(copy)};
+            }
+
+            val half = copy.length >> 1;
+            val left = new Object[half];
+            val right = new Object[copy.length - half];
+
+            System.arraycopy(copy, 0, left, 0, half);
+            System.arraycopy(copy, half, right, 0, right.length);
+            return new Node[]{new Leaf(left), new Leaf(right)};
+        }
+
+        @Override
+        Node remove(int index) {
+            val size = items.length;
+
+            if (size == 1) {
+                return null;
+            }
+
+            val copy = new Object[size - 1];
+
+            System.arraycopy(items, 0, copy, 0, index);
+            System.arraycopy(items, index + 1, copy, index, size - index - 1);
+            return new Leaf(copy);
+        }
+
+        @Override
+        int width() {
+            return items.length;
+        }
+
+        static Leaf concat(Leaf left, Leaf right) {
+            val items = new Object[left.items.length + right.items.length];
+
+            System.arraycopy(left.items, 0, items, 0, left.items.length);
+            System.arraycopy(right.items, 0, items, left.items.length, right.items.length);
+            return new Leaf(items);
+        }
+
+    }
+
+    private static final class Branch extends Node {
+
+        final Node[] children;
+        // offsets[i] is a number of items in children preceding i-th child
+        final int[] offsets;
+
+        private Branch(Node[] children, int[] offsets) {
+            super(offsets[children.length]);
+            this.children = children;
+            this.offsets = offsets;
+        }
+
+        static Branch of(Node[] children) {
+            val offsets = new int[children.length + 1];
+
+            for (var i = 0; i < children.length; ++i) {
+                offsets[i + 1] = offsets[i] + children[i].size;
+            }
+
+            return new Branch(children, offsets);
+        }
+
+        @Override
+        Object get(int index) {
+            var branch = this;
+            // descends iteratively down to a leaf
+            for (; ; ) {
+                val child = branch.childFor(index);
+                val node = branch.children[child];
+
+                index -= branch.offsets[child];
+
+                if (!(node instanceof Branch)) {
+                    return node.get(index);
+                }
+
+                branch = (Branch) node;
+            }
+        }
+
+        @Override
+        Node set(int index, Object item) {
+            val child = childFor(index);
+            val children = this.children.clone();
+
+            children[child] = children[child].set(index - offsets[child], item);
+            // sizes stay the same, offsets can be shared
+            return new Branch(children, offsets);
+        }
+
+        @Override
+        Node[] insert(int index, Object item) {
+            // inserting at the very end goes into the last child
+            val child = index == size ? children.length - 1 : childFor(index);
+            val result = children[child].insert(index - offsets[child], item);
+            val children = new Node[this.children.length + result.length - 1];
+
+            System.arraycopy(this.children, 0, children, 0, child);
+            System.arraycopy(result, 0, children, child, result.length);
+            System.arraycopy(this.children, child + 1, children, child + result.length, this.children.length - child - 1);
+
+            if (children.length <= MAX_WIDTH) {
+                return new Node[]{Branch.of(children)};
+            }
+
+            val half = children.length >> 1;
+            val left = new Node[half];
+            val right = new Node[children.length - half];
+
+            System.arraycopy(children, 0, left, 0, half);
+            System.arraycopy(children, half, right, 0, right.length);
+            return new Node[]{Branch.of(left), Branch.of(right)};
+        }
+
+        @Override
+        Node remove(int index) {
+            val child = childFor(index);
+            val updated = children[child].remove(index - offsets[child]);
+
+            if (updated == null) {
+                if (children.length == 1) {
+                    return null;
+                }
+
+                val children = new Node[this.children.length - 1];
+
+                System.arraycopy(this.children, 0, children, 0, child);
+                System.arraycopy(this.children, child + 1, children, child, children.length - child);
+                return Branch.of(children);
+            }
+
+            val children = this.children.clone();
+
+            children[child] = updated;
+            // merges underflown child with its neighbour
+            // to keep the tree reasonably dense
+            if (updated.width() < MAX_WIDTH / 4 && children.length > 1) {
+                val left = child > 0 ? child - 1 : child;
+                val merged = Branch.concat(children[left], children[left + 1]);
+
+                if (merged != null) {
+                    val shrunk = new Node[children.length - 1];
+
+                    System.arraycopy(children, 0, shrunk, 0, left);
+                    shrunk[left] = merged;
+                    System.arraycopy(children, left + 2, shrunk, left + 1, children.length - left - 2);
+                    return Branch.of(shrunk);
+                }
+            }
+
+            return Branch.of(children);
+        }
+
+        @Override
+        int width() {
+            return children.length;
+        }
+
+        private int childFor(int index) {
+            // binary search for the last child whose offset <= index
+            var lo = 0;
+            var hi = children.length - 1;
+
+            while (lo < hi) {
+                val mid = (lo + hi + 1) >>> 1;
+
+                if (offsets[mid] <= index) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+
+            return lo;
+        }
+
+        /**
+         * @return concatenation of two nodes of the same kind if
+         * it fits into a single node, null otherwise
+         */
+        static Node concat(Node left, Node right) {
+            if (left.width() + right.width() > MAX_WIDTH) {
+                return null;
+            }
+
+            if (left instanceof Leaf && right instanceof Leaf) {
+                return Leaf.concat((Leaf) left, (Leaf) right);
+            }
+
+            if (left instanceof Branch && right instanceof Branch) {
+                val l = ((Branch) left).children;
+                val r = ((Branch) right).children;
+                val children = new Node[l.length + r.length];
+
+                System.arraycopy(l, 0, children, 0, l.length);
+                System.arraycopy(r, 0, children, l.length, r.length);
+                return Branch.of(children);
+            }
+
+            return null;
+        }
+
+    }
+
+}
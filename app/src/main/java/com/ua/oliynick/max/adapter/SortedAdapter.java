@@ -1,20 +1,30 @@
 package com.ua.oliynick.max.adapter;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.widget.RecyclerView;
 import android.util.SparseArray;
 import android.view.ViewGroup;
 
+import com.ua.oliynick.max.adapter.util.BackgroundExecutors;
+import com.ua.oliynick.max.adapter.util.LongHashMap;
+import com.ua.oliynick.max.adapter.util.LongHashSet;
+import com.ua.oliynick.max.adapter.util.MemoryLayout;
+import com.ua.oliynick.max.adapter.util.ParallelMergeSort;
 import com.ua.oliynick.max.adapter.util.Precondition;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.RandomAccess;
 
 import lombok.experimental.var;
 import lombok.val;
@@ -35,6 +45,16 @@ import lombok.val;
  * To provide own list implementation you can override {@link #createList()}
  * </p>
  * <p>
+ * {@link #getData()} returns live view of the data set which mustn't be read from
+ * other threads. To hand out data to background code use {@link #snapshot()}
+ * </p>
+ * <p>
+ * Items can be split into collapsible groups, see {@link #setGroupKeyProvider(GroupKeyProvider)}.
+ * Collapsed groups keep their items in the data set, so positions passed to offset methods,
+ * {@link #getItem(int)} and view holder adapters are data set positions, while adapter
+ * positions correspond to visible items only
+ * </p>
+ * <p>
  * It's highly recommended to use immutable data types for this adapter. If fields of used data are mutable
  * and used for comparing at the same time, then there is possible situation when after changing of
  * one of these fields adapter's sort order can be violated; new insertions and deletions will cause
@@ -46,11 +66,63 @@ import lombok.val;
 public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     private final List<T> data;
+    // unmodifiable view of data, is created once to avoid allocations
+    private final List<T> dataView;
     private final SparseArray<ViewHolderAdapter> viewHolders;
+    private final SortedDiff.Callback<T> notifyingCallback = new SortedDiff.Callback<T>() {
+        @Override
+        public void onInserted(int position, int count, @NotNull T first) {
+            notifyItemRangeInserted(position + getAdapterOffset(position, first), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count, @NotNull T first) {
+            notifyItemRangeRemoved(position + getAdapterOffset(position, first), count);
+        }
+
+        @Override
+        public void onChanged(int position, int count, @NotNull T first) {
+            notifyItemRangeChanged(position + getAdapterOffset(position, first), count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition, @NotNull T item) {
+            notifyItemMoved(fromPosition + getAdapterOffset(fromPosition, item),
+                    toPosition + getAdapterOffset(toPosition, item));
+        }
+    };
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<ViewHolderWarmUp> warmUps = new ArrayList<>(1);
+    // reusable set for debug checks
+    private final LongHashSet debugKeys = new LongHashSet();
     private Comparator<? super T> comparator;
+    private DisplayModelCache<T> displayModels;
+    private GroupKeyProvider<? super T> groupKeyProvider;
+    // null if data set isn't grouped
+    private GroupIndex groups;
+    private GroupKeyProvider<? super T> sectionKeyProvider;
+    // null if data set isn't split into sections
+    private GroupIndex sections;
+    // is read by background threads running search queries
+    private volatile TextSearchIndex<T> searchIndex;
+    // the latest scheduled version for each key
+    private final LongHashMap<T> pendingUpdates = new LongHashMap<>();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPendingUpdates();
+        }
+    };
+    private long coalescingWindow;
+    private boolean flushScheduled;
+    // number of data set mutations, used to detect stale diffs
+    private int modCount;
+    // is read by background thread to skip outdated snapshots early
+    private volatile int snapshotGeneration;
 
     protected SortedAdapter(@NotNull Comparator<? super T> comparator) {
         this.data = Precondition.isNotNull(createList());
+        this.dataView = Collections.unmodifiableList(data);
         this.comparator = Precondition.isNotNull(comparator);
         this.viewHolders = new SparseArray<>(1);
     }
@@ -59,6 +131,7 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
         Precondition.isNotNullAll(comparator, viewHolder);
 
         this.data = Precondition.isNotNull(createList());
+        this.dataView = Collections.unmodifiableList(data);
         this.comparator = comparator;
         this.viewHolders = new SparseArray<>(1);
 
@@ -71,6 +144,7 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
         Precondition.isNotNullAll(comparator, viewHolders);
 
         this.data = Precondition.isNotNull(createList());
+        this.dataView = Collections.unmodifiableList(data);
         this.comparator = comparator;
         this.viewHolders = new SparseArray<>(Math.max(1, viewHolders.length));
 
@@ -81,7 +155,8 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
 
     /**
      * Sets new comparator, according to which data set will
-     * be sorted
+     * be sorted. Large data sets are sorted concurrently, see
+     * {@link ParallelMergeSort}
      *
      * @param comparator comparator to apply, can't be null
      */
@@ -90,8 +165,87 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
 
         this.comparator = comparator;
 
-        Collections.sort(data, comparator);
-        notifyItemRangeChanged(0, getItemCount());
+        if (searchIndex != null) {
+            searchIndex.setComparator(comparator);
+        }
+
+        val sorted = toArray(data);
+
+        ParallelMergeSort.sort(sorted, comparator);
+        swapData(sorted);
+
+        if (groups == null) {
+            notifyItemRangeChanged(0, getItemCount());
+        } else {
+            // number of visible items may change
+            notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * <p>
+     * Replaces whole data set with the given items. Items are copied into
+     * an array, deduplicated by key and sorted concurrently if there are many of them,
+     * see {@link ParallelMergeSort}. If several items share the same key, then the last one
+     * wins, just like it would happen for sequential {@link #addOrUpdate(HasKey)} calls.
+     * </p>
+     * <p>
+     * If adapter has no observers, e.g. isn't attached to any {@link RecyclerView}, or data set is grouped, then the new
+     * data set is swapped in with a single {@link #notifyDataSetChanged()} call. Otherwise
+     * difference between the old and the new data sets is calculated in linear time
+     * and dispatched as batched range notifications
+     * </p>
+     * <p>
+     * Snapshots submitted via {@link #submitSnapshot(List)} which weren't dispatched yet
+     * are superseded by the given items and dropped
+     * </p>
+     *
+     * @param items items to replace data set with, can't be null
+     */
+    public final void replaceAll(@NotNull Collection<? extends T> items) {
+        Precondition.isNotNull(items);
+        // pending snapshot would overwrite these items otherwise
+        ++snapshotGeneration;
+
+        val comparator = this.comparator;
+        val fresh = SortedAdapter.toSortedUniqueArray(items, comparator);
+
+        if (!hasObservers() || groups != null) {
+            swapData(fresh);
+            notifyDataSetChanged();
+            return;
+        }
+
+        val result = SortedDiff.calculate(toArray(data), fresh, comparator);
+
+        swapData(fresh);
+        result.dispatchTo(notifyingCallback);
+    }
+
+    /**
+     * <p>
+     * Asynchronously replaces whole data set with the given snapshot. Snapshot
+     * is sorted and compared with the current data set on a background thread,
+     * calculated insertions, removals, changes and moves are dispatched on the main thread
+     * afterwards, see {@link #replaceAll(Collection)} for details.
+     * </p>
+     * <p>
+     * If a newer snapshot is submitted or {@link #replaceAll(Collection)} is called before
+     * result is dispatched, then the result is dropped. If data set was changed by other means meanwhile, then difference with
+     * the actual data set is recalculated on the main thread, which runs in linear time
+     * unless comparator was changed as well.
+     * </p>
+     * <p>
+     * This method must be called from the main thread
+     * </p>
+     *
+     * @param snapshot new data set, can be unsorted, can't be null
+     */
+    public final void submitSnapshot(@NotNull List<? extends T> snapshot) {
+        Precondition.isNotNull(snapshot);
+        // copies items, so that later changes of the passed
+        // list won't affect result
+        calculateSnapshotDiff(new ArrayList<T>(snapshot), ++snapshotGeneration);
     }
 
     /**
@@ -112,32 +266,22 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
             return;
         }
 
-        val data = this.data;
-
         if (BuildConfig.DEBUG) {
             // Does heavy constraint checks, don't use this
             // in production code
-            SortedAdapter.ensureDataSetValid(data, comparator);
+            SortedAdapter.ensureDataSetValid(data, comparator, debugKeys);
         }
 
-        for (val item : items) {
-            // log(N) complexity
-            val i = Collections.binarySearch(data, item, comparator);
-            var j = i < 0 ? -1 * i - 1 : i;
-
-            for (; j > 0 && (j - 1 <= 0 || comparator.compare(item, data.get(j - 1)) == 0) && item.getViewId() != data.get(j).getViewId(); --j)
-                ;
-
-            var stopPosFound = false;
-
-            for (; !stopPosFound && j < data.size(); ++j) {
-                val it = data.get(j);
-
-                stopPosFound = comparator.compare(it, item) != 0;
+        if (items instanceof RandomAccess && items instanceof List) {
+            // avoids iterator allocation
+            val list = (List<? extends T>) items;
 
-                if (it.getViewId() == item.getViewId()) {
-                    removeItem(j);
-                }
+            for (var i = 0; i < list.size(); ++i) {
+                doRemove(list.get(i));
+            }
+        } else {
+            for (val item : items) {
+                doRemove(item);
             }
         }
     }
@@ -153,26 +297,17 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
         if (keys.isEmpty()) {
             return;
         }
-        // mid
-        var n = data.size() + 1 >> 1;
-        var found = false;
-
-        for (val hasKey : keys) {
-            val key = hasKey.getViewId();
-
-            for (var i = 0; i < n && !found; ++i) {
-                // check both at the start and at the end of the data set
-                if (found = key == data.get(i).getViewId() // lo
-                        // hi
-                        || key == data.get(data.size() - i - 1).getViewId()) {
-                    removeItem(i);
-                }
-            }
 
-            if (found) {
-                // recalculate mid
-                n = data.size() + 1 >> 1;
-                found = false;
+        if (keys instanceof RandomAccess && keys instanceof List) {
+            // avoids iterator allocation
+            val list = (List<? extends HasKey>) keys;
+
+            for (var i = 0; i < list.size(); ++i) {
+                doRemoveViaKey(list.get(i).getViewId());
+            }
+        } else {
+            for (val hasKey : keys) {
+                doRemoveViaKey(hasKey.getViewId());
             }
         }
     }
@@ -190,6 +325,7 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
      * </p>
      *
      * @param item item to insert or update
+     * @throws IllegalStateException if item would split a group or a section, adapter isn't changed then
      */
     public final void addOrUpdate(@NotNull T item) {
         doAddOrUpdate(Precondition.isNotNull(item, "Item to insert was null"));
@@ -208,6 +344,8 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
      * </p>
      *
      * @param items items to insert or update
+     * @throws IllegalStateException if item would split a group or a section, items
+     *                               preceding the rejected one stay applied
      */
     public final void addOrUpdate(@NotNull Collection<? extends T> items) {
         Precondition.isNotNull(items);
@@ -219,11 +357,110 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
         if (BuildConfig.DEBUG) {
             // Does heavy constraint checks, don't use this
             // in production code
-            SortedAdapter.ensureDataSetValid(data, comparator);
+            SortedAdapter.ensureDataSetValid(data, comparator, debugKeys);
         }
 
-        for (val item : items) {
-            doAddOrUpdate(item);
+        if (items instanceof RandomAccess && items instanceof List) {
+            // avoids iterator allocation
+            val list = (List<? extends T>) items;
+
+            for (var i = 0; i < list.size(); ++i) {
+                doAddOrUpdate(list.get(i));
+            }
+        } else {
+            for (val item : items) {
+                doAddOrUpdate(item);
+            }
+        }
+    }
+
+    /**
+     * Sets time during which updates scheduled via {@link #scheduleAddOrUpdate(HasKey)}
+     * are collected before they are applied
+     *
+     * @param millis window in milliseconds, 0 applies updates on the next main loop iteration
+     */
+    public final void setCoalescingWindow(long millis) {
+        Precondition.checkArgument(millis >= 0, "Negative coalescing window");
+        coalescingWindow = millis;
+    }
+
+    /**
+     * <p>
+     * Schedules insertion or update of the given item. Only the latest version scheduled
+     * for each key within coalescing window is applied, see {@link #setCoalescingWindow(long)}.
+     * Use this method for items which are updated frequently, e.g. live counters.
+     * </p>
+     * <p>
+     * Pending updates are applied on top of the data set as it is at flush time, each affected
+     * item gets a single change notification. Unlike {@link #addOrUpdate(HasKey)}, updates which
+     * change item's sort position are supported and dispatched as moves. Removal of an item
+     * cancels its pending update, including removal by {@link #replaceAll(Collection)} or
+     * {@link #submitSnapshot(List)}.
+     * </p>
+     * <p>
+     * Updates are validated when applied, so {@link IllegalStateException} for an update
+     * which splits a group or a section is thrown by flush, see {@link #flushPendingUpdates()}.
+     * This method must be called from the main thread
+     * </p>
+     *
+     * @param item item to insert or update
+     */
+    public final void scheduleAddOrUpdate(@NotNull T item) {
+        Precondition.isNotNull(item, "Item to insert was null");
+        pendingUpdates.put(item.getViewId(), item);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            mainHandler.postDelayed(flushTask, coalescingWindow);
+        }
+    }
+
+    /**
+     * Applies updates scheduled via {@link #scheduleAddOrUpdate(HasKey)} immediately.
+     * Updates which keep item's sort position are applied in place, the rest of updates
+     * are resolved by a single pass over data set
+     *
+     * @throws IllegalStateException if update would split a group or a section, the
+     *                               rejected update is dropped, the rest may stay applied
+     */
+    public final void flushPendingUpdates() {
+        if (flushScheduled) {
+            mainHandler.removeCallbacks(flushTask);
+            flushScheduled = false;
+        }
+
+        if (pendingUpdates.isEmpty()) {
+            return;
+        }
+
+        val items = new ArrayList<T>(pendingUpdates.size());
+
+        pendingUpdates.copyValuesTo(items);
+        pendingUpdates.clear();
+
+        LongHashMap<T> unresolved = null;
+
+        for (var i = 0; i < items.size(); ++i) {
+            val item = items.get(i);
+            // binary search finds items which keep sort position
+            val position = indexOf(item);
+
+            if (position >= 0) {
+                if (!data.get(position).equals(item)) {
+                    setItem(position, item);
+                }
+            } else {
+                if (unresolved == null) {
+                    unresolved = new LongHashMap<>();
+                }
+
+                unresolved.put(item.getViewId(), item);
+            }
+        }
+
+        if (unresolved != null) {
+            flushUnresolved(unresolved);
         }
     }
 
@@ -232,7 +469,75 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
      */
     @NotNull
     public final List<T> getData() {
-        return Collections.unmodifiableList(data);
+        return dataView;
+    }
+
+    /**
+     * <p>
+     * Returns immutable snapshot of the current data set which can be safely
+     * read from any thread while the adapter is being mutated.
+     * </p>
+     * <p>
+     * If list created by {@link #createList()} is a {@link SnapshotList}, then this
+     * method runs O(1) and snapshot shares structure with the data set. Otherwise
+     * whole data set is copied
+     * </p>
+     *
+     * @return immutable snapshot of the data set
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public final List<T> snapshot() {
+        if (data instanceof SnapshotList) {
+            return ((SnapshotList<T>) data).snapshot();
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(data));
+    }
+
+    /**
+     * <p>
+     * Estimates memory retained by structures of this adapter: {@code data}, {@code viewHolders},
+     * {@code debugKeys}, {@code pendingUpdates} and, if enabled, {@code groups}, {@code sections},
+     * {@code searchIndex} and {@code displayModels}. Items and display models aren't counted.
+     * </p>
+     * <p>
+     * Capacity of {@link ArrayList} isn't known, so its size is used instead and the estimate is a
+     * lower bound; after growth up to a half of that again may be unused. {@link CompactList} costs about
+     * the same per item, but its estimate is exact and it never reserves more than two spare chunks
+     * </p>
+     *
+     * @return memory footprint report
+     */
+    @NotNull
+    public final MemoryFootprint getMemoryFootprint() {
+        val structures = new LinkedHashMap<String, Long>();
+        // capacity of sparse array is unknown as well
+        val viewHoldersBytes = MemoryLayout.object(2 * MemoryLayout.REFERENCE + 5)
+                + MemoryLayout.array(viewHolders.size(), 4) + MemoryLayout.referenceArray(viewHolders.size());
+
+        structures.put("data", SortedAdapter.estimateBytes(data));
+        structures.put("viewHolders", viewHoldersBytes);
+        structures.put("debugKeys", debugKeys.estimateBytes());
+        structures.put("pendingUpdates", pendingUpdates.estimateBytes());
+
+        if (groups != null) {
+            structures.put("groups", groups.estimateBytes());
+        }
+
+        if (sections != null) {
+            structures.put("sections", sections.estimateBytes());
+        }
+
+        if (searchIndex != null) {
+            structures.put("searchIndex", searchIndex.estimateBytes());
+        }
+
+        if (displayModels != null) {
+            structures.put("displayModels", displayModels.estimateBytes());
+        }
+
+        return new MemoryFootprint(structures, data.size());
     }
 
     /**
@@ -245,113 +550,485 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
     }
 
     /**
-     * Adds view holder adapter
+     * <p>
+     * Enables cache of display models, see {@link ViewHolderAdapter#onCreateDisplayModel(HasKey)}.
+     * Each time a position is bound, models for positions which are within the given
+     * distance from it are created on a background thread, so that binds find models ready.
+     * </p>
+     * <p>
+     * Cache size should exceed number of visible items plus doubled prefetch distance,
+     * otherwise prefetched models get evicted before they are used
+     * </p>
+     *
+     * @param maxSize          max number of cached models, 0 disables cache
+     * @param prefetchDistance number of positions to prefetch in both directions from the bound one
      */
-    public final void addViewHolder(@NotNull ViewHolderAdapter viewHolder) {
-        viewHolders.append(viewHolders.size(), Precondition.isNotNull(viewHolder));
+    public final void setDisplayModelCache(int maxSize, int prefetchDistance) {
+        Precondition.checkArgument(maxSize >= 0 && prefetchDistance >= 0, "Negative cache size or prefetch distance");
+
+        if (displayModels != null) {
+            displayModels.clear();
+        }
+
+        displayModels = maxSize == 0 ? null : new DisplayModelCache<T>(maxSize, prefetchDistance);
     }
 
     /**
-     * @return copy of used view holder adapters
+     * Returns display model for the item on the given position, see
+     * {@link ViewHolderAdapter#onCreateDisplayModel(HasKey)}. If model isn't cached yet,
+     * then it's created on the calling thread
+     *
+     * @param position data set position to get model for, no offsets are applied,
+     *                 item mustn't be hidden inside a collapsed group
+     * @return display model, can be null if view holder adapter doesn't create models
      */
-    @NotNull
-    public final SparseArray<ViewHolderAdapter> getViewHolders() {
-        return viewHolders.clone();
+    @Nullable
+    public final Object getDisplayModel(int position) {
+        val item = data.get(position);
+        val viewHolder = getViewHolderForData(position, item);
+
+        if (displayModels == null) {
+            return viewHolder.onCreateDisplayModel(item);
+        }
+
+        return displayModels.get(item, viewHolder);
     }
 
     /**
-     * @return comparator used by this adapter instance
+     * <p>
+     * Splits data set into groups, items of each group must be adjacent according
+     * to the comparator, so it should compare group keys first. Groups are expanded
+     * unless collapsed via {@link #setGroupExpanded(long, boolean)}, collapsed group
+     * shows its first item only.
+     * </p>
+     * <p>
+     * Mapping between adapter and data set positions runs O(log(g)), where g is number of groups.
+     * Once grouping is enabled, {@link #getItemCount()} should be based on {@link #getVisibleItemCount()}
+     * </p>
+     *
+     * @param provider provider of group keys, null disables grouping
+     * @throws IllegalStateException if items of some group aren't adjacent
      */
-    @NotNull
-    public final Comparator<? super T> getComparator() {
-        return comparator;
-    }
-
-    @Override
-    @SuppressWarnings("unchecked")
-    public final int getItemViewType(int position) {
-        val size = viewHolders.size();
-
-        for (var i = 0; i < size; ++i) {
-            val holder = viewHolders.valueAt(i);
+    public final void setGroupKeyProvider(@Nullable GroupKeyProvider<? super T> provider) {
+        groupKeyProvider = provider;
 
-            if (holder.canHandle(position, this)) {
-                return viewHolders.keyAt(i);
+        if (provider == null) {
+            groups = null;
+        } else {
+            if (groups == null) {
+                groups = new GroupIndex();
             }
+
+            SortedAdapter.rebuild(groups, provider, data);
         }
 
-        throw new IllegalStateException(
-                String.format("Couldn't find acceptable view holder for position %d", position));
+        notifyDataSetChanged();
     }
 
-    @Override
-    public final RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-        return getAdapterOrThrow(viewType).onCreateViewHolder(parent);
-    }
+    /**
+     * <p>
+     * Splits data set into sections, e.g. to draw sticky headers. Items of each section
+     * must be adjacent according to the comparator. Section boundaries are updated
+     * incrementally as items are inserted or removed, so that section lookups run
+     * O(log(s)), where s is number of sections.
+     * </p>
+     * <p>
+     * Sections are independent of groups, see {@link #setGroupKeyProvider(GroupKeyProvider)}
+     * </p>
+     *
+     * @param provider provider of section keys, null disables sections
+     * @throws IllegalStateException if items of some section aren't adjacent
+     */
+    public final void setSectionKeyProvider(@Nullable GroupKeyProvider<? super T> provider) {
+        sectionKeyProvider = provider;
 
-    @Override
-    @SuppressWarnings("unchecked")
-    public final void onBindViewHolder(RecyclerView.ViewHolder h, int position, List<Object> payloads) {
-        getAdapterOrThrow(getItemViewType(position)).onBindViewHolder(h, payloads, position + getDataOffset(position), this);
-    }
+        if (provider == null) {
+            sections = null;
+        } else {
+            if (sections == null) {
+                sections = new GroupIndex();
+            }
 
-    @Override
-    public final void onBindViewHolder(RecyclerView.ViewHolder h, int position) {
-        getAdapterOrThrow(getItemViewType(position)).onBindViewHolder(h, position + getDataOffset(position), this);
+            SortedAdapter.rebuild(sections, provider, data);
+        }
     }
 
-    @Override
-    public final void onViewAttachedToWindow(RecyclerView.ViewHolder holder) {
-        getAdapterOrThrow(holder.getItemViewType()).onViewAttachedToWindow(holder, this);
+    /**
+     * Returns position of the first item of section which contains item
+     * on the given position. To find header for adapter position convert it
+     * via {@link #getDataOffset(int)} and {@link #getDataPosition(int)} first
+     *
+     * @param dataPosition data set position, no offsets are applied
+     * @return data set position of the section's first item
+     * @throws IllegalStateException if sections aren't enabled
+     */
+    public final int getSectionStart(int dataPosition) {
+        checkDataPosition(dataPosition);
+        return getSectionsOrThrow().groupStart(dataPosition);
     }
 
-    @Override
-    public final void onViewDetachedFromWindow(RecyclerView.ViewHolder holder) {
-        getAdapterOrThrow(holder.getItemViewType()).onViewDetachedFromWindow(holder, this);
+    /**
+     * @param dataPosition data set position, no offsets are applied
+     * @return true if item on the given position is the first one of its section
+     * @throws IllegalStateException if sections aren't enabled
+     */
+    public final boolean isSectionStart(int dataPosition) {
+        return getSectionStart(dataPosition) == dataPosition;
     }
 
-    @Override
-    public boolean onFailedToRecycleView(RecyclerView.ViewHolder holder) {
-        return getAdapterOrThrow(holder.getItemViewType()).onFailedToRecycleView(holder, this);
+    /**
+     * @param dataPosition data set position, no offsets are applied
+     * @return key of section which contains item on the given position
+     * @throws IllegalStateException if sections aren't enabled
+     */
+    public final long getSectionKey(int dataPosition) {
+        checkDataPosition(dataPosition);
+        return getSectionsOrThrow().groupKeyAt(dataPosition);
     }
 
-    @Override
-    public void onViewRecycled(RecyclerView.ViewHolder holder) {
-        getAdapterOrThrow(holder.getItemViewType()).onViewRecycled(holder, this);
+    /**
+     * @return number of sections
+     * @throws IllegalStateException if sections aren't enabled
+     */
+    public final int getSectionCount() {
+        return getSectionsOrThrow().groupCount();
     }
 
     /**
-     * This method returns offset for adapter to correctly notify
-     * recycler view about data changes
+     * Expands or collapses group. Runs O(log(g)) and dispatches single range
+     * notification for the group items except for the first one. State of a group
+     * which isn't present in data set yet is remembered
      *
-     * @param dataSetPosition position in the underlying data list
-     * @param item            item which triggered event
-     * @return calculated offset
+     * @param groupKey key of the group
+     * @param expanded true to expand group, false to collapse it
+     * @throws IllegalStateException if grouping isn't enabled
      */
-    protected abstract int getAdapterOffset(int dataSetPosition, @NotNull T item);
+    public final void setGroupExpanded(long groupKey, boolean expanded) {
+        val groups = getGroupsOrThrow();
+
+        if (!groups.setExpanded(groupKey, expanded)) {
+            return;
+        }
+
+        val count = groups.groupSize(groupKey) - 1;
+
+        if (count == 0) {
+            return;
+        }
+        // the first item stays visible
+        val dataPosition = groups.dataStart(groupKey) + 1;
+        val position = groups.visibleStart(groupKey) + 1 + getAdapterOffset(dataPosition, data.get(dataPosition));
+
+        if (expanded) {
+            notifyItemRangeInserted(position, count);
+        } else {
+            notifyItemRangeRemoved(position, count);
+        }
+    }
 
     /**
-     * In a contrary to {@link #getAdapterOffset(int, HasKey)} this method returns
-     * offset to convert adapter's position into calculated position to be able
-     * to access underlying data
-     *
-     * @param position position in adapter
-     * @return calculated offset
+     * @param groupKey key of the group
+     * @return true if group isn't collapsed
+     * @throws IllegalStateException if grouping isn't enabled
      */
-    protected abstract int getDataOffset(int position);
+    public final boolean isGroupExpanded(long groupKey) {
+        return getGroupsOrThrow().isExpanded(groupKey);
+    }
 
     /**
-     * Override this method to provide own {@link List} implementation.
-     * Performance of this adapter is highly depends on used list implementation
+     * Collapses expanded group and expands collapsed one
      *
-     * @return list implementation to be used by the adapter
+     * @param groupKey key of the group
+     * @throws IllegalStateException if grouping isn't enabled
      */
-    @NotNull
-    protected List<T> createList() {
-        return new ArrayList<>();
+    public final void toggleGroup(long groupKey) {
+        setGroupExpanded(groupKey, !isGroupExpanded(groupKey));
     }
 
-    private void doAddOrUpdate(@NotNull T item) {
+    /**
+     * @return number of items which aren't hidden inside collapsed groups
+     */
+    public final int getVisibleItemCount() {
+        return groups == null ? data.size() : groups.visibleSize();
+    }
+
+    /**
+     * Converts position among visible items into data set position
+     *
+     * @param visiblePosition position among visible items, no offsets are applied
+     * @return data set position, out of range positions are returned as is
+     */
+    public final int getDataPosition(int visiblePosition) {
+        if (groups == null || visiblePosition < 0 || visiblePosition >= groups.visibleSize()) {
+            return visiblePosition;
+        }
+
+        return groups.toData(visiblePosition);
+    }
+
+    /**
+     * Converts data set position into position among visible items
+     *
+     * @param dataPosition data set position, no offsets are applied
+     * @return position among visible items or -1 if item is hidden inside a collapsed group,
+     * out of range positions are returned as is
+     */
+    public final int getVisiblePosition(int dataPosition) {
+        if (groups == null || dataPosition < 0 || dataPosition >= data.size()) {
+            return dataPosition;
+        }
+
+        return groups.toVisible(dataPosition);
+    }
+
+    /**
+     * <p>
+     * Enables text search over data set, see {@link #search(String)}. Index is built
+     * on the calling thread and is kept up to date with data set afterwards, so each
+     * mutation additionally costs time proportional to length of the changed item's text.
+     * </p>
+     * <p>
+     * This method must be called from the main thread
+     * </p>
+     *
+     * @param extractor supplier of searchable text, null disables search
+     */
+    public final void setSearchTextExtractor(@Nullable TextExtractor<? super T> extractor) {
+        if (extractor == null) {
+            searchIndex = null;
+        } else {
+            val index = new TextSearchIndex<T>(extractor, comparator);
+
+            index.replaceAll(data);
+            searchIndex = index;
+        }
+    }
+
+    /**
+     * <p>
+     * Finds items whose searchable text contains the given query ignoring case.
+     * Items are looked up by trigrams of the query instead of scanning whole data
+     * set, queries shorter than three characters are answered by a scan.
+     * </p>
+     * <p>
+     * This method can be called from any thread
+     * </p>
+     *
+     * @param query text to look for, can't be null
+     * @return unmodifiable list of found items sorted by the adapter's comparator
+     * @throws IllegalStateException if search isn't enabled, see {@link #setSearchTextExtractor(TextExtractor)}
+     */
+    @NotNull
+    public final List<T> search(@NotNull String query) {
+        Precondition.isNotNull(query);
+
+        val index = searchIndex;
+
+        if (index == null) {
+            throw new IllegalStateException("Search isn't enabled, see setSearchTextExtractor");
+        }
+
+        return index.search(query);
+    }
+
+    /**
+     * Adds view holder adapter
+     */
+    public final void addViewHolder(@NotNull ViewHolderAdapter viewHolder) {
+        viewHolders.append(viewHolders.size(), Precondition.isNotNull(viewHolder));
+    }
+
+    /**
+     * @return copy of used view holder adapters
+     */
+    @NotNull
+    public final SparseArray<ViewHolderAdapter> getViewHolders() {
+        return viewHolders.clone();
+    }
+
+    /**
+     * @return comparator used by this adapter instance
+     */
+    @NotNull
+    public final Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final int getItemViewType(int position) {
+        val size = viewHolders.size();
+
+        for (var i = 0; i < size; ++i) {
+            val holder = viewHolders.valueAt(i);
+
+            if (holder.canHandle(position, this)) {
+                return viewHolders.keyAt(i);
+            }
+        }
+
+        throw new IllegalStateException(
+                String.format("Couldn't find acceptable view holder for position %d", position));
+    }
+
+    @Override
+    public final RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        return getAdapterOrThrow(viewType).onCreateViewHolder(parent);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final void onBindViewHolder(RecyclerView.ViewHolder h, int position, List<Object> payloads) {
+        val dataPosition = getDataPosition(position + getDataOffset(position));
+
+        getAdapterOrThrow(getItemViewType(position)).onBindViewHolder(h, payloads, dataPosition, this);
+        prefetchDisplayModels(dataPosition);
+    }
+
+    @Override
+    public final void onBindViewHolder(RecyclerView.ViewHolder h, int position) {
+        val dataPosition = getDataPosition(position + getDataOffset(position));
+
+        getAdapterOrThrow(getItemViewType(position)).onBindViewHolder(h, dataPosition, this);
+        prefetchDisplayModels(dataPosition);
+    }
+
+    /**
+     * Starts pre-inflation of view holders, see {@link ViewHolderAdapter#getWarmUpCount()}.
+     * Subclasses overriding this method must call through to super
+     */
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        startWarmUp(recyclerView);
+    }
+
+    /**
+     * Cancels pre-inflation of view holders started for the given view.
+     * Subclasses overriding this method must call through to super
+     */
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        cancelWarmUp(recyclerView);
+    }
+
+    @Override
+    public final void onViewAttachedToWindow(RecyclerView.ViewHolder holder) {
+        getAdapterOrThrow(holder.getItemViewType()).onViewAttachedToWindow(holder, this);
+    }
+
+    @Override
+    public final void onViewDetachedFromWindow(RecyclerView.ViewHolder holder) {
+        getAdapterOrThrow(holder.getItemViewType()).onViewDetachedFromWindow(holder, this);
+    }
+
+    @Override
+    public boolean onFailedToRecycleView(RecyclerView.ViewHolder holder) {
+        return getAdapterOrThrow(holder.getItemViewType()).onFailedToRecycleView(holder, this);
+    }
+
+    @Override
+    public void onViewRecycled(RecyclerView.ViewHolder holder) {
+        getAdapterOrThrow(holder.getItemViewType()).onViewRecycled(holder, this);
+    }
+
+    /**
+     * This method returns offset for adapter to correctly notify
+     * recycler view about data changes
+     *
+     * @param dataSetPosition position in the underlying data list
+     * @param item            item which triggered event
+     * @return calculated offset
+     */
+    protected abstract int getAdapterOffset(int dataSetPosition, @NotNull T item);
+
+    /**
+     * In a contrary to {@link #getAdapterOffset(int, HasKey)} this method returns
+     * offset to convert adapter's position into calculated position to be able
+     * to access underlying data
+     *
+     * @param position position in adapter
+     * @return calculated offset
+     */
+    protected abstract int getDataOffset(int position);
+
+    /**
+     * Override this method to provide own {@link List} implementation.
+     * Performance of this adapter is highly depends on used list implementation.
+     * Return {@link SnapshotList} to make {@link #snapshot()} cheap or
+     * {@link CompactList} to avoid spare capacity and whole array copying on growth of large data sets
+     *
+     * @return list implementation to be used by the adapter
+     */
+    @NotNull
+    protected List<T> createList() {
+        return new ArrayList<>();
+    }
+
+    private void doRemove(@NotNull T item) {
+        pendingUpdates.remove(item.getViewId());
+
+        val i = indexOf(item);
+
+        if (i >= 0) {
+            removeItem(i);
+        }
+    }
+
+    /**
+     * Finds item with the same key among items which are equal
+     * to the given one according to comparator, runs O(log(N))
+     *
+     * @return position of the found item or -1
+     */
+    private int indexOf(@NotNull T item) {
+        val data = this.data;
+        val i = Collections.binarySearch(data, item, comparator);
+
+        if (i < 0) {
+            return -1;
+        }
+
+        var j = i;
+        // moves to the first one of items which are
+        // equal to the given according to comparator
+        for (; j > 0 && comparator.compare(item, data.get(j - 1)) == 0; --j)
+            ;
+
+        for (; j < data.size() && comparator.compare(item, data.get(j)) == 0; ++j) {
+            if (data.get(j).getViewId() == item.getViewId()) {
+                return j;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean doRemoveViaKey(long key) {
+        pendingUpdates.remove(key);
+
+        val data = this.data;
+        // mid
+        val n = data.size() + 1 >> 1;
+
+        for (var i = 0; i < n; ++i) {
+            // check both at the start and at the end of the data set
+            if (key == data.get(i).getViewId()) {
+                removeItem(i);
+                return true;
+            }
+
+            val hi = data.size() - i - 1;
+
+            if (key == data.get(hi).getViewId()) {
+                removeItem(hi);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void doAddOrUpdate(@NotNull T item) {
         // log(N) complexity; index where a new item may be
         // inserted
         val i = Collections.binarySearch(data, item, comparator);
@@ -395,34 +1072,491 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
         }
     }
 
+    /**
+     * Applies updates of items which are new or change their sort position
+     */
+    private void flushUnresolved(LongHashMap<T> updates) {
+        val current = new LongHashMap<T>(updates.size());
+        // single pass finds current versions of updated items
+        for (var i = 0; i < data.size() && current.size() < updates.size(); ++i) {
+            val item = data.get(i);
+
+            if (updates.containsKey(item.getViewId())) {
+                current.put(item.getViewId(), item);
+            }
+        }
+
+        val items = new ArrayList<T>(updates.size());
+
+        updates.copyValuesTo(items);
+
+        for (var i = 0; i < items.size(); ++i) {
+            val item = items.get(i);
+            val previous = current.get(item.getViewId());
+
+            if (previous == null) {
+                addItem(insertionPoint(item), item);
+            } else {
+                moveItem(indexOf(previous), item);
+            }
+        }
+    }
+
+    private int insertionPoint(@NotNull T item) {
+        val i = Collections.binarySearch(data, item, comparator);
+
+        return i < 0 ? -1 * i - 1 : i;
+    }
+
+    private void prefetchDisplayModels(int dataPosition) {
+        val displayModels = this.displayModels;
+
+        if (displayModels == null) {
+            return;
+        }
+
+        val visiblePosition = getVisiblePosition(dataPosition);
+
+        if (visiblePosition < 0 || visiblePosition >= getVisibleItemCount()) {
+            // header or footer was bound
+            return;
+        }
+        // prefetches items which are going to be shown, skipping collapsed ones
+        val from = Math.max(0, visiblePosition - displayModels.getPrefetchDistance());
+        val to = Math.min(getVisibleItemCount() - 1, visiblePosition + displayModels.getPrefetchDistance());
+
+        for (var i = from; i <= to; ++i) {
+            val position = getDataPosition(i);
+            val item = data.get(position);
+
+            if (i != visiblePosition && !displayModels.contains(item)) {
+                displayModels.prefetch(item, getViewHolderForData(position, item));
+            }
+        }
+    }
+
+    private ViewHolderAdapter<T> getViewHolderForData(int dataPosition, T item) {
+        val visiblePosition = getVisiblePosition(dataPosition);
+
+        Precondition.checkArgument(visiblePosition >= 0, "Item is hidden inside a collapsed group");
+        return getAdapterOrThrow(getItemViewType(visiblePosition + getAdapterOffset(dataPosition, item)));
+    }
+
+    private GroupIndex getGroupsOrThrow() {
+        if (groups == null) {
+            throw new IllegalStateException("Grouping isn't enabled, see setGroupKeyProvider");
+        }
+
+        return groups;
+    }
+
+    private GroupIndex getSectionsOrThrow() {
+        if (sections == null) {
+            throw new IllegalStateException("Sections aren't enabled, see setSectionKeyProvider");
+        }
+
+        return sections;
+    }
+
+    private void checkDataPosition(int dataPosition) {
+        if (dataPosition < 0 || dataPosition >= data.size()) {
+            throw new IndexOutOfBoundsException("Position " + dataPosition + ", size " + data.size());
+        }
+    }
+
+    private void startWarmUp(RecyclerView recyclerView) {
+        val size = viewHolders.size();
+        val viewTypes = new int[size];
+        val counts = new int[size];
+        var n = 0;
+
+        for (var i = 0; i < size; ++i) {
+            val count = viewHolders.valueAt(i).getWarmUpCount();
+
+            if (count > 0) {
+                viewTypes[n] = viewHolders.keyAt(i);
+                counts[n++] = count;
+            }
+        }
+
+        if (n > 0) {
+            val warmUp = new ViewHolderWarmUp(recyclerView, this);
+
+            warmUps.add(warmUp);
+            warmUp.start(Arrays.copyOf(viewTypes, n), Arrays.copyOf(counts, n));
+        }
+    }
+
+    private void cancelWarmUp(RecyclerView recyclerView) {
+        for (var i = warmUps.size() - 1; i >= 0; --i) {
+            if (warmUps.get(i).getRecyclerView() == recyclerView) {
+                warmUps.remove(i).cancel();
+            }
+        }
+    }
+
+    private void calculateSnapshotDiff(final List<T> snapshot, final int generation) {
+        val comparator = this.comparator;
+        val old = toArray(data);
+        val expectedModCount = modCount;
+
+        BackgroundExecutors.serial().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != snapshotGeneration) {
+                    // newer snapshot is already submitted
+                    return;
+                }
+
+                val fresh = SortedAdapter.toSortedUniqueArray(snapshot, comparator);
+                val result = SortedDiff.calculate(old, fresh, comparator);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatchSnapshotDiff(generation, expectedModCount, comparator, fresh, result);
+                    }
+                });
+            }
+        });
+    }
+
+    private void dispatchSnapshotDiff(int generation, int expectedModCount, Comparator<? super T> comparator,
+                                      T[] fresh, SortedDiff.Result<T> result) {
+        if (generation != snapshotGeneration) {
+            return;
+        }
+
+        var actual = result;
+
+        if (expectedModCount != modCount) {
+            // data set was changed while diff was calculated, so result is stale;
+            // instead of starting over, which might never finish under steady
+            // updates, fresh items are merged with the actual data set here
+            if (comparator != this.comparator) {
+                ParallelMergeSort.sort(fresh, this.comparator);
+            }
+
+            actual = SortedDiff.calculate(toArray(data), fresh, this.comparator);
+        }
+
+        swapData(fresh);
+
+        if (!hasObservers() || groups != null) {
+            notifyDataSetChanged();
+        } else {
+            actual.dispatchTo(notifyingCallback);
+        }
+    }
+
+    private void swapData(T[] items) {
+        if (!pendingUpdates.isEmpty()) {
+            cancelPendingUpdatesOfRemoved(items);
+        }
+
+        data.clear();
+        data.addAll(Arrays.asList(items));
+        ++modCount;
+
+        if (groups != null) {
+            SortedAdapter.rebuild(groups, groupKeyProvider, data);
+        }
+
+        if (sections != null) {
+            SortedAdapter.rebuild(sections, sectionKeyProvider, data);
+        }
+
+        if (searchIndex != null) {
+            searchIndex.replaceAll(data);
+        }
+    }
+
+    /**
+     * Cancels pending updates of items which are in the current data set, but
+     * not in the new one, otherwise the next flush would bring removed items back.
+     * Pending insertions of items which aren't in the current data set are kept
+     */
+    private void cancelPendingUpdatesOfRemoved(T[] items) {
+        val keys = new LongHashSet(items.length);
+
+        for (val item : items) {
+            keys.add(item.getViewId());
+        }
+
+        for (var i = 0; i < data.size(); ++i) {
+            val key = data.get(i).getViewId();
+
+            if (!keys.contains(key)) {
+                pendingUpdates.remove(key);
+            }
+        }
+    }
+
     private void setItem(int position, T item) {
-        data.set(position, item);
-        notifyItemChanged(position + getAdapterOffset(position, item));
+        checkAdjacency(position, item, position);
+
+        val previous = data.set(position, item);
+
+        ++modCount;
+
+        if (displayModels != null) {
+            displayModels.invalidate(item.getViewId());
+        }
+
+        if (searchIndex != null) {
+            searchIndex.put(item);
+        }
+
+        if (sections != null && sectionKeyProvider.getGroupKey(previous) != sectionKeyProvider.getGroupKey(item)) {
+            sections.remove(position);
+            sections.insert(position, sectionKeyProvider.getGroupKey(item));
+        }
+
+        if (groups != null && groupKeyProvider.getGroupKey(previous) != groupKeyProvider.getGroupKey(item)) {
+            // item moved to another group
+            notifyGroupRemoval(position, previous);
+            notifyGroupInsertion(position, item);
+            return;
+        }
+
+        val visiblePosition = getVisiblePosition(position);
+
+        if (visiblePosition >= 0) {
+            notifyItemChanged(visiblePosition + getAdapterOffset(position, item));
+        }
     }
 
     private void addItem(T t) {
         val oldSize = data.size();
 
+        checkAdjacency(oldSize, t, -1);
         data.add(t);
-        notifyItemInserted(data.size() + getAdapterOffset(oldSize, t));
+        ++modCount;
+
+        if (searchIndex != null) {
+            searchIndex.put(t);
+        }
+
+        if (sections != null) {
+            sections.insert(oldSize, sectionKeyProvider.getGroupKey(t));
+        }
+
+        if (groups == null) {
+            notifyItemInserted(oldSize + getAdapterOffset(oldSize, t));
+        } else {
+            notifyGroupInsertion(oldSize, t);
+        }
     }
 
     private void addItem(int position, T item) {
+        checkAdjacency(position, item, -1);
         data.add(position, item);
-        notifyItemInserted(position + getAdapterOffset(position, item));
+        ++modCount;
+
+        if (searchIndex != null) {
+            searchIndex.put(item);
+        }
+
+        if (sections != null) {
+            sections.insert(position, sectionKeyProvider.getGroupKey(item));
+        }
+
+        if (groups == null) {
+            notifyItemInserted(position + getAdapterOffset(position, item));
+        } else {
+            notifyGroupInsertion(position, item);
+        }
+    }
+
+    /**
+     * Replaces item on the given position with its new version
+     * which belongs to another sort position
+     */
+    private void moveItem(int from, T item) {
+        val size = data.size();
+
+        if ((from == 0 || comparator.compare(data.get(from - 1), item) <= 0)
+                && (from == size - 1 || comparator.compare(item, data.get(from + 1)) <= 0)) {
+            // new version still fits between neighbours
+            setItem(from, item);
+            return;
+        }
+
+        val point = insertionPoint(item);
+        // insertion point is shifted by removal of the previous version
+        val to = point > from ? point - 1 : point;
+
+        checkAdjacency(to, item, from);
+
+        val previous = data.remove(from);
+
+        data.add(to, item);
+        ++modCount;
+
+        if (displayModels != null) {
+            displayModels.invalidate(item.getViewId());
+        }
+
+        if (searchIndex != null) {
+            searchIndex.put(item);
+        }
+
+        if (sections != null) {
+            sections.remove(from);
+            sections.insert(to, sectionKeyProvider.getGroupKey(item));
+        }
+
+        if (groups != null) {
+            notifyGroupRemoval(from, previous);
+            notifyGroupInsertion(to, item);
+            return;
+        }
+
+        notifyItemMoved(from + getAdapterOffset(from, previous), to + getAdapterOffset(to, item));
+        notifyItemChanged(to + getAdapterOffset(to, item));
     }
 
     private void removeItem(int position) {
         val item = data.remove(position);
 
+        ++modCount;
+
         if (item != null) {
-            notifyItemRemoved(position + getAdapterOffset(position, item));
+            if (displayModels != null) {
+                displayModels.invalidate(item.getViewId());
+            }
+
+            if (searchIndex != null) {
+                searchIndex.remove(item.getViewId());
+            }
+
+            if (sections != null) {
+                sections.remove(position);
+            }
+
+            if (groups == null) {
+                notifyItemRemoved(position + getAdapterOffset(position, item));
+            } else {
+                notifyGroupRemoval(position, item);
+            }
+        }
+    }
+
+    /**
+     * Checks that item can be put on the given position without splitting a group
+     * or a section, so that rejected item leaves data set and indices untouched
+     *
+     * @param removedPosition position of item removed beforehand or -1,
+     *                        the given position is counted after removal
+     */
+    private void checkAdjacency(int position, T item, int removedPosition) {
+        if (sections != null) {
+            sections.checkInsertion(position, sectionKeyProvider.getGroupKey(item), removedPosition);
+        }
+
+        if (groups != null) {
+            groups.checkInsertion(position, groupKeyProvider.getGroupKey(item), removedPosition);
+        }
+    }
+
+    /**
+     * Registers item which was put into data set on the given position
+     * in group index and notifies about it unless it's hidden
+     */
+    private void notifyGroupInsertion(int position, T item) {
+        val result = groups.insert(position, groupKeyProvider.getGroupKey(item));
+
+        if (result == GroupIndex.HIDDEN) {
+            return;
+        }
+
+        val adapterPosition = groups.toVisible(position) + getAdapterOffset(position, item);
+
+        if (result == GroupIndex.HEAD_REPLACED) {
+            // item took place of the first item of a collapsed group
+            notifyItemChanged(adapterPosition);
+        } else {
+            notifyItemInserted(adapterPosition);
+        }
+    }
+
+    /**
+     * Unregisters item which was taken from data set on the given
+     * position and notifies about it unless it was hidden
+     */
+    private void notifyGroupRemoval(int position, T item) {
+        val visiblePosition = groups.toVisible(position);
+        val result = groups.remove(position);
+
+        if (result == GroupIndex.HIDDEN) {
+            return;
+        }
+
+        val adapterPosition = visiblePosition + getAdapterOffset(position, item);
+
+        if (result == GroupIndex.HEAD_REPLACED) {
+            notifyItemChanged(adapterPosition);
+        } else {
+            notifyItemRemoved(adapterPosition);
         }
     }
 
     @SuppressWarnings("unchecked")
     private ViewHolderAdapter<T> getAdapterOrThrow(int viewType) {
-        return Precondition.isNotNull(viewHolders.get(viewType), "Couldn't find view holder for view type %d", viewType);
+        val adapter = viewHolders.get(viewType);
+
+        if (adapter == null) {
+            // message is formatted lazily, so binding doesn't box view type
+            throw new NullPointerException(String.format(Locale.ENGLISH, "Couldn't find view holder for view type %d", viewType));
+        }
+
+        return adapter;
+    }
+
+    private static long estimateBytes(List<?> list) {
+        if (list instanceof CompactList) {
+            return ((CompactList<?>) list).estimateBytes();
+        }
+
+        if (list instanceof SnapshotList) {
+            return ((SnapshotList<?>) list).estimateBytes();
+        }
+        // assumes array backed list without spare capacity
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 8) + MemoryLayout.referenceArray(list.size());
+    }
+
+    private static <T> void rebuild(GroupIndex index, GroupKeyProvider<? super T> provider, List<T> items) {
+        index.clear();
+
+        for (var i = 0; i < items.size(); ++i) {
+            index.append(provider.getGroupKey(items.get(i)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends HasKey> T[] toArray(Collection<T> items) {
+        return items.toArray((T[]) new HasKey[items.size()]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends HasKey> T[] toSortedUniqueArray(Collection<? extends T> items, Comparator<? super T> comparator) {
+        val source = items.toArray();
+        val keys = new LongHashSet(source.length);
+        val unique = (T[]) new HasKey[source.length];
+        var start = source.length;
+        // walks backwards, so the last item for each key wins
+        for (var i = source.length - 1; i >= 0; --i) {
+            val item = (T) Precondition.isNotNull(source[i], "Item to insert was null");
+
+            if (keys.add(item.getViewId())) {
+                unique[--start] = item;
+            }
+        }
+
+        val result = start == 0 ? unique : Arrays.copyOfRange(unique, start, unique.length);
+
+        ParallelMergeSort.sort(result, comparator);
+        return result;
     }
 
     private static <T> void ensureSorted(List<? extends T> check, Comparator<T> c) {
@@ -431,25 +1565,29 @@ public abstract class SortedAdapter<T extends HasKey> extends RecyclerView.Adapt
         for (var i = 0; i < check.size(); ++i) {
             val item = check.get(i);
 
-            if (prev != null) {
-                Precondition.checkArgument(c.compare(item, prev) >= 0,
+            if (prev != null && c.compare(item, prev) < 0) {
+                throw new IllegalArgumentException(
                         String.format(Locale.ENGLISH, "Wrong data order for %s, %s, pos %d", prev, item, i));
             }
             prev = item;
         }
     }
 
-    private static <T extends HasKey> void ensureNoDuplicates(Collection<? extends T> check) {
-        val ids = new HashSet<Long>(check.size());
+    private static <T extends HasKey> void ensureNoDuplicates(List<? extends T> check, LongHashSet ids) {
+        ids.clear();
+        ids.ensureCapacity(check.size());
 
-        for (val c : check) {
-            Precondition.checkArgument(ids.add(c.getViewId()), "Found id duplicate in collection %s", check);
+        for (var i = 0; i < check.size(); ++i) {
+            if (!ids.add(check.get(i).getViewId())) {
+                throw new IllegalArgumentException(
+                        String.format(Locale.ENGLISH, "Found id duplicate in collection %s", check));
+            }
         }
     }
 
-    private static <T extends HasKey> void ensureDataSetValid(List<T> items, Comparator<? super T> comparator) {
+    private static <T extends HasKey> void ensureDataSetValid(List<T> items, Comparator<? super T> comparator, LongHashSet ids) {
         SortedAdapter.ensureSorted(items, comparator);
-        SortedAdapter.ensureNoDuplicates(items);
+        SortedAdapter.ensureNoDuplicates(items, ids);
     }
 
 }
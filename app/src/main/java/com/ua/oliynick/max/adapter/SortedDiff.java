@@ -0,0 +1,288 @@
+package com.ua.oliynick.max.adapter;
+
+import com.ua.oliynick.max.adapter.util.LongIntHashMap;
+import com.ua.oliynick.max.adapter.util.LongHashSet;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * Calculates difference between two data sets which are sorted
+ * according to the same comparator and whose items have unique keys.
+ * Both data sets are walked simultaneously just like during merge of
+ * two sorted sequences, so calculation runs in linear time unlike general
+ * purpose diff algorithms
+ * </p>
+ * <p>
+ * Items whose keys are present in both data sets but whose sort position has
+ * changed are reported as moves. Positions of moved items are tracked by
+ * a binary indexed tree, so each move costs additional O(log(m + n))
+ * </p>
+ */
+final class SortedDiff {
+
+    /**
+     * Receives update operations, positions are relative to the state of
+     * data set after all previously dispatched operations were applied
+     */
+    interface Callback<T> {
+
+        void onInserted(int position, int count, @NotNull T first);
+
+        void onRemoved(int position, int count, @NotNull T first);
+
+        void onChanged(int position, int count, @NotNull T first);
+
+        void onMoved(int fromPosition, int toPosition, @NotNull T item);
+
+    }
+
+    /**
+     * Calculated list of update operations
+     */
+    static final class Result<T extends HasKey> {
+
+        private static final int INSERT = 0, REMOVE = 1, CHANGE = 2, MOVE = 3;
+        // each operation takes 3 slots: type, position, count;
+        // for moves these are type, from and to positions
+        private int[] ops;
+        private Object[] items;
+        private int size;
+
+        private Result(int capacity) {
+            ops = new int[capacity * 3];
+            items = new Object[capacity];
+        }
+
+        /**
+         * @return number of operations after batching
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Dispatches update operations to the given callback
+         */
+        @SuppressWarnings("unchecked")
+        void dispatchTo(@NotNull Callback<? super T> callback) {
+            val ops = this.ops;
+
+            for (var i = 0; i < size; ++i) {
+                val type = ops[i * 3];
+                val position = ops[i * 3 + 1];
+                val count = ops[i * 3 + 2];
+                val item = (T) items[i];
+
+                switch (type) {
+                    case INSERT:
+                        callback.onInserted(position, count, item);
+                        break;
+                    case REMOVE:
+                        callback.onRemoved(position, count, item);
+                        break;
+                    case CHANGE:
+                        callback.onChanged(position, count, item);
+                        break;
+                    case MOVE:
+                        callback.onMoved(position, count, item);
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown operation " + type);
+                }
+            }
+        }
+
+        private void add(int type, int position, T item) {
+            if (size > 0 && type != MOVE) {
+                val last = (size - 1) * 3;
+                val lastType = ops[last];
+                val lastPosition = ops[last + 1];
+                val lastCount = ops[last + 2];
+                // batches consecutive operations of the same type
+                if (lastType == type && (type == REMOVE ? lastPosition == position : lastPosition + lastCount == position)) {
+                    ops[last + 2]++;
+                    return;
+                }
+            }
+
+            append(type, position, 1, item);
+        }
+
+        private void addMove(int from, int to, T item) {
+            if (from != to) {
+                append(MOVE, from, to, item);
+            }
+        }
+
+        private void append(int type, int position, int count, T item) {
+            if (size == items.length) {
+                val capacity = Math.max(4, size << 1);
+
+                ops = Arrays.copyOf(ops, capacity * 3);
+                items = Arrays.copyOf(items, capacity);
+            }
+
+            ops[size * 3] = type;
+            ops[size * 3 + 1] = position;
+            ops[size * 3 + 2] = count;
+            items[size++] = item;
+        }
+
+    }
+
+    private SortedDiff() {
+        throw new IllegalStateException("shouldn't be called");
+    }
+
+    /**
+     * Calculates difference between two sorted data sets
+     *
+     * @param old        old data set, sorted, without duplicate keys
+     * @param fresh      new data set, sorted by the same comparator, without duplicate keys
+     * @param comparator comparator both data sets are sorted with
+     * @return list of operations which transform old data set into the new one
+     */
+    @NotNull
+    static <T extends HasKey> Result<T> calculate(@NotNull T[] old, @NotNull T[] fresh,
+                                                  @NotNull Comparator<? super T> comparator) {
+        val m = old.length;
+        val n = fresh.length;
+        // indices aren't boxed, old data set may be large
+        val oldIndices = new LongIntHashMap(m);
+        val newKeys = new LongHashSet(n);
+
+        for (var i = 0; i < m; ++i) {
+            oldIndices.put(old[i].getViewId(), i);
+        }
+
+        for (val item : fresh) {
+            newKeys.add(item.getViewId());
+        }
+        // anchors are items which keep their relative order, the
+        // rest of items is either inserted, removed or has moved
+        val oldAnchors = new boolean[m];
+        val newAnchors = new boolean[n];
+        var lastAnchor = -1;
+        var cursor = 0;
+
+        for (var j = 0; j < n; ++j) {
+            val item = fresh[j];
+            val k = oldIndices.get(item.getViewId(), -1);
+
+            if (k < 0) {
+                continue;
+            }
+
+            while (cursor < m && comparator.compare(old[cursor], item) < 0) {
+                ++cursor;
+            }
+            // old item keeps sort position if it lies in the run of items equal to the new
+            // one, the run starts at cursor since old data set is sorted; items that broke
+            // order are treated as moved
+            if (k >= cursor && k > lastAnchor && comparator.compare(old[k], item) == 0) {
+                oldAnchors[k] = newAnchors[j] = true;
+                lastAnchor = k;
+            }
+        }
+        // merges both data sets into a single sequence of slots, each
+        // anchor takes one slot; current position of any item is the
+        // number of occupied slots before its slot
+        val oldSlots = new int[m];
+        val newSlots = new int[n];
+        var slots = 0;
+        var i = 0;
+        var j = 0;
+
+        while (i < m || j < n) {
+            if (i < m && !oldAnchors[i]) {
+                oldSlots[i++] = slots++;
+            } else if (j < n && !newAnchors[j]) {
+                newSlots[j++] = slots++;
+            } else {
+                oldSlots[i++] = newSlots[j++] = slots++;
+            }
+        }
+
+        val occupied = new int[slots + 1];
+
+        for (val slot : oldSlots) {
+            SortedDiff.increment(occupied, slot, 1);
+        }
+
+        val result = new Result<T>(4);
+
+        i = j = 0;
+
+        while (i < m || j < n) {
+            if (i < m && !oldAnchors[i]) {
+                val item = old[i];
+                // moved items are handled when their new slot is reached
+                if (!newKeys.contains(item.getViewId())) {
+                    result.add(Result.REMOVE, SortedDiff.countBefore(occupied, oldSlots[i]), item);
+                    SortedDiff.increment(occupied, oldSlots[i], -1);
+                }
+
+                ++i;
+            } else if (j < n && !newAnchors[j]) {
+                val item = fresh[j];
+                val slot = newSlots[j];
+                val oldIndex = oldIndices.get(item.getViewId(), -1);
+
+                if (oldIndex < 0) {
+                    SortedDiff.increment(occupied, slot, 1);
+                    result.add(Result.INSERT, SortedDiff.countBefore(occupied, slot), item);
+                } else {
+                    val from = SortedDiff.countBefore(occupied, oldSlots[oldIndex]);
+
+                    SortedDiff.increment(occupied, oldSlots[oldIndex], -1);
+                    SortedDiff.increment(occupied, slot, 1);
+
+                    val to = SortedDiff.countBefore(occupied, slot);
+
+                    result.addMove(from, to, item);
+
+                    if (!old[oldIndex].equals(item)) {
+                        result.add(Result.CHANGE, to, item);
+                    }
+                }
+
+                ++j;
+            } else {
+                // both items are anchors with the same key
+                if (!old[i].equals(fresh[j])) {
+                    result.add(Result.CHANGE, SortedDiff.countBefore(occupied, newSlots[j]), fresh[j]);
+                }
+
+                ++i;
+                ++j;
+            }
+        }
+
+        return result;
+    }
+
+    // binary indexed tree operations, tree is 1-based
+    private static void increment(int[] tree, int slot, int delta) {
+        for (var i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private static int countBefore(int[] tree, int slot) {
+        var sum = 0;
+
+        for (var i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+
+        return sum;
+    }
+
+}
@@ -0,0 +1,14 @@
+package com.ua.oliynick.max.adapter;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Supplies searchable text of an item, see {@link SortedAdapter#setSearchTextExtractor(TextExtractor)}.
+ * Implementations are called from the main thread and should return the same text for the same item
+ */
+public interface TextExtractor<T> {
+
+    @NotNull
+    String getSearchText(@NotNull T item);
+
+}
@@ -0,0 +1,318 @@
+package com.ua.oliynick.max.adapter;
+
+import com.ua.oliynick.max.adapter.util.LongHashMap;
+import com.ua.oliynick.max.adapter.util.LongHashSet;
+import com.ua.oliynick.max.adapter.util.MemoryLayout;
+import com.ua.oliynick.max.adapter.util.ParallelMergeSort;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * Case insensitive substring search index over items. Each item's text is split into
+ * trigrams, every trigram maps to the set of keys of items containing it. A query is
+ * answered by intersecting posting sets of its trigrams, starting from the smallest one,
+ * and verifying remaining candidates; queries shorter than a trigram fall back to a scan.
+ * </p>
+ * <p>
+ * Index is updated from the main thread and can be queried from any thread. A query holds
+ * read lock only while candidates are collected, verification and sorting of results
+ * run without lock. Results are sorted by the comparator the index was given last
+ * </p>
+ */
+final class TextSearchIndex<T extends HasKey> {
+
+    private static final int GRAM_LENGTH = 3;
+
+    private static final class Entry<T> {
+
+        final T item;
+        // lower cased text
+        final String text;
+
+        Entry(T item, String text) {
+            this.item = item;
+            this.text = text;
+        }
+    }
+
+    private final TextExtractor<? super T> extractor;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongHashMap<Entry<T>> entries = new LongHashMap<>();
+    private final LongHashMap<LongHashSet> postings = new LongHashMap<>();
+    // reusable set of distinct trigrams of a single text, guarded by write lock
+    private final LongHashSet grams = new LongHashSet();
+    private Comparator<? super T> comparator;
+
+    TextSearchIndex(@NotNull TextExtractor<? super T> extractor, @NotNull Comparator<? super T> comparator) {
+        this.extractor = extractor;
+        this.comparator = comparator;
+    }
+
+    void setComparator(@NotNull Comparator<? super T> comparator) {
+        lock.writeLock().lock();
+
+        try {
+            this.comparator = comparator;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds item to index or replaces item with the same key
+     */
+    void put(@NotNull T item) {
+        val text = TextSearchIndex.normalize(extractor.getSearchText(item));
+
+        lock.writeLock().lock();
+
+        try {
+            putLocked(item, text);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long key) {
+        lock.writeLock().lock();
+
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes index contain the given items only, items which are
+     * already indexed aren't processed again
+     */
+    void replaceAll(@NotNull List<? extends T> items) {
+        lock.writeLock().lock();
+
+        try {
+            val keys = new LongHashSet(items.size());
+
+            for (var i = 0; i < items.size(); ++i) {
+                val item = items.get(i);
+                val entry = entries.get(item.getViewId());
+
+                keys.add(item.getViewId());
+
+                if (entry == null || entry.item != item) {
+                    putLocked(item, TextSearchIndex.normalize(extractor.getSearchText(item)));
+                }
+            }
+
+            if (entries.size() > keys.size()) {
+                val stale = new ArrayList<Entry<T>>(entries.size() - keys.size());
+
+                entries.copyValuesTo(stale);
+
+                for (val entry : stale) {
+                    if (!keys.contains(entry.item.getViewId())) {
+                        removeLocked(entry.item.getViewId());
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds items whose text contains the given query ignoring case
+     *
+     * @return unmodifiable list of found items in sort order
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    List<T> search(@NotNull String query) {
+        val normalized = TextSearchIndex.normalize(query);
+        val candidates = new ArrayList<Entry<T>>();
+        final Comparator<? super T> comparator;
+        // lock is held while candidates are collected only, so that
+        // mutations from the main thread aren't blocked by verification
+        // and sorting of long lists
+        lock.readLock().lock();
+
+        try {
+            comparator = this.comparator;
+
+            if (normalized.length() < GRAM_LENGTH) {
+                entries.copyValuesTo(candidates);
+            } else {
+                collectCandidates(normalized, candidates);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        val found = TextSearchIndex.verify(candidates, normalized);
+
+        if (found.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        val result = found.toArray((T[]) new HasKey[found.size()]);
+
+        ParallelMergeSort.sort(result, comparator);
+        return Collections.unmodifiableList(Arrays.asList(result));
+    }
+
+    /**
+     * @return estimated retained size of this index in bytes excluding
+     * items themselves, see {@link MemoryLayout}
+     */
+    long estimateBytes() {
+        lock.readLock().lock();
+
+        try {
+            val entryList = new ArrayList<Entry<T>>(entries.size());
+            val postingList = new ArrayList<LongHashSet>(postings.size());
+            var bytes = entries.estimateBytes() + postings.estimateBytes() + grams.estimateBytes();
+
+            entries.copyValuesTo(entryList);
+            postings.copyValuesTo(postingList);
+
+            for (val entry : entryList) {
+                bytes += MemoryLayout.object(2 * MemoryLayout.REFERENCE) + MemoryLayout.string(entry.text.length());
+            }
+
+            for (val keys : postingList) {
+                bytes += keys.estimateBytes();
+            }
+
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Collects entries which contain all trigrams of the given query, must be called under lock
+     */
+    private void collectCandidates(String query, List<Entry<T>> candidates) {
+        val sets = new LongHashSet[query.length() - GRAM_LENGTH + 1];
+        var smallest = 0;
+
+        for (var i = 0; i < sets.length; ++i) {
+            sets[i] = postings.get(TextSearchIndex.gram(query, i));
+
+            if (sets[i] == null) {
+                // some trigram occurs nowhere
+                return;
+            }
+
+            if (sets[i].size() < sets[smallest].size()) {
+                smallest = i;
+            }
+        }
+
+        for (val key : sets[smallest].toArray()) {
+            if (TextSearchIndex.containedInAll(key, sets)) {
+                candidates.add(entries.get(key));
+            }
+        }
+    }
+
+    private void putLocked(T item, String text) {
+        val key = item.getViewId();
+        val previous = entries.put(key, new Entry<>(item, text));
+
+        if (previous != null) {
+            if (previous.text.equals(text)) {
+                return;
+            }
+
+            removeGrams(key, previous.text);
+        }
+
+        collectGrams(text);
+
+        for (val gram : grams.toArray()) {
+            var keys = postings.get(gram);
+
+            if (keys == null) {
+                keys = new LongHashSet();
+                postings.put(gram, keys);
+            }
+
+            keys.add(key);
+        }
+    }
+
+    private void removeLocked(long key) {
+        val entry = entries.remove(key);
+
+        if (entry != null) {
+            removeGrams(key, entry.text);
+        }
+    }
+
+    private void removeGrams(long key, String text) {
+        collectGrams(text);
+
+        for (val gram : grams.toArray()) {
+            val keys = postings.get(gram);
+
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    private void collectGrams(String text) {
+        grams.clear();
+
+        for (var i = 0; i + GRAM_LENGTH <= text.length(); ++i) {
+            grams.add(TextSearchIndex.gram(text, i));
+        }
+    }
+
+    private static <T> List<T> verify(List<Entry<T>> candidates, String query) {
+        val found = new ArrayList<T>();
+        // entries are immutable, so they are safely read without lock;
+        // trigrams may occur in other order, so text is checked anyway
+        for (var i = 0; i < candidates.size(); ++i) {
+            val entry = candidates.get(i);
+
+            if (entry.text.contains(query)) {
+                found.add(entry.item);
+            }
+        }
+
+        return found;
+    }
+
+    private static boolean containedInAll(long key, LongHashSet[] sets) {
+        for (val set : sets) {
+            if (!set.contains(key)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long gram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ENGLISH);
+    }
+
+}
@@ -4,6 +4,7 @@ import android.support.v7.widget.RecyclerView;
 import android.view.ViewGroup;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 
@@ -39,4 +40,44 @@ public abstract class ViewHolderAdapter<T extends HasKey> {
     @NotNull
     protected abstract RecyclerView.ViewHolder onCreateViewHolder(@NotNull ViewGroup parent);
 
+    /**
+     * <p>
+     * Converts item into a bind-ready display model, for example, formats dates
+     * or builds spans, so that binding only assigns precomputed values to views.
+     * Models are retrieved via {@link SortedAdapter#getDisplayModel(int)} and are cached
+     * if {@link SortedAdapter#setDisplayModelCache(int, int)} is enabled.
+     * </p>
+     * <p>
+     * Note, that models of prefetched items are created on a background thread, so this
+     * method mustn't touch views or mutable state of the adapter
+     * </p>
+     *
+     * @param item item to create model for
+     * @return display model, null by default
+     */
+    @Nullable
+    protected Object onCreateDisplayModel(@NotNull T item) {
+        return null;
+    }
+
+    /**
+     * <p>
+     * Returns number of view holders which should be created in advance once
+     * {@link SortedAdapter} is attached to a {@link RecyclerView}. Such view holders
+     * are put into {@link RecyclerView.RecycledViewPool}, so the first scroll doesn't pay
+     * for layout inflation. Pool capacity for the view type is raised to this number
+     * if needed.
+     * </p>
+     * <p>
+     * Note, that for warm up {@link #onCreateViewHolder(ViewGroup)} is called from a background
+     * thread. If it throws, for example, because a view requires {@link android.os.Looper},
+     * then view holders are created on the main thread when it's idle
+     * </p>
+     *
+     * @return number of view holders to create in advance, 0 by default
+     */
+    protected int getWarmUpCount() {
+        return 0;
+    }
+
 }
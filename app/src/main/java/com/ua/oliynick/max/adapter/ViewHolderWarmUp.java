@@ -0,0 +1,148 @@
+package com.ua.oliynick.max.adapter;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v7.widget.RecyclerView;
+
+import com.ua.oliynick.max.adapter.util.BackgroundExecutors;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+
+import lombok.experimental.var;
+import lombok.val;
+
+/**
+ * <p>
+ * Creates view holders in advance and seeds {@link RecyclerView.RecycledViewPool}
+ * with them. View holders are created on a dedicated background thread and are put into the
+ * pool on the main thread when its message queue is idle, one view holder per idle
+ * callback, so warm up doesn't compete with frames rendering
+ * </p>
+ * <p>
+ * All methods must be called from the main thread
+ * </p>
+ */
+final class ViewHolderWarmUp implements MessageQueue.IdleHandler {
+
+    // RecyclerView.RecycledViewPool default capacity per view type
+    private static final int DEFAULT_POOL_CAPACITY = 5;
+
+    private final RecyclerView recyclerView;
+    private final RecyclerView.Adapter<RecyclerView.ViewHolder> adapter;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // holders to put into pool
+    private final ArrayDeque<RecyclerView.ViewHolder> created = new ArrayDeque<>();
+    // view types whose holders couldn't be created on a background thread
+    private final ArrayDeque<Integer> failed = new ArrayDeque<>();
+    private volatile boolean cancelled;
+    private boolean idleHandlerAdded;
+
+    ViewHolderWarmUp(@NotNull RecyclerView recyclerView,
+                     @NotNull RecyclerView.Adapter<RecyclerView.ViewHolder> adapter) {
+        this.recyclerView = recyclerView;
+        this.adapter = adapter;
+    }
+
+    @NotNull
+    RecyclerView getRecyclerView() {
+        return recyclerView;
+    }
+
+    /**
+     * Starts warm up
+     *
+     * @param viewTypes view types to create holders for
+     * @param counts    number of holders to create for the corresponding view type
+     */
+    void start(@NotNull final int[] viewTypes, @NotNull final int[] counts) {
+        val pool = recyclerView.getRecycledViewPool();
+
+        for (var i = 0; i < viewTypes.length; ++i) {
+            if (counts[i] > DEFAULT_POOL_CAPACITY) {
+                pool.setMaxRecycledViews(viewTypes[i], counts[i]);
+            }
+        }
+
+        BackgroundExecutors.inflation().execute(new Runnable() {
+            @Override
+            public void run() {
+                for (var i = 0; i < viewTypes.length; ++i) {
+                    for (var j = 0; j < counts[i] && !cancelled; ++j) {
+                        createInBackground(viewTypes[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels warm up, view holders which weren't put into pool yet are dropped
+     */
+    void cancel() {
+        cancelled = true;
+        created.clear();
+        failed.clear();
+
+        if (idleHandlerAdded) {
+            Looper.myQueue().removeIdleHandler(this);
+            idleHandlerAdded = false;
+        }
+    }
+
+    @Override
+    public boolean queueIdle() {
+        if (cancelled || recyclerView.getAdapter() != adapter) {
+            cancel();
+            return false;
+        }
+
+        if (!created.isEmpty()) {
+            recyclerView.getRecycledViewPool().putRecycledView(created.poll());
+        } else if (!failed.isEmpty()) {
+            recyclerView.getRecycledViewPool().putRecycledView(adapter.createViewHolder(recyclerView, failed.poll()));
+        }
+
+        idleHandlerAdded = !created.isEmpty() || !failed.isEmpty();
+        return idleHandlerAdded;
+    }
+
+    private void createInBackground(final int viewType) {
+        val result = tryCreateViewHolder(viewType);
+
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) {
+                    return;
+                }
+
+                if (result == null) {
+                    failed.add(viewType);
+                } else {
+                    created.add(result);
+                }
+
+                if (!idleHandlerAdded) {
+                    Looper.myQueue().addIdleHandler(ViewHolderWarmUp.this);
+                    idleHandlerAdded = true;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return created view holder or null if view couldn't be
+     * inflated off the main thread, the main thread will retry
+     */
+    private RecyclerView.ViewHolder tryCreateViewHolder(int viewType) {
+        try {
+            return adapter.createViewHolder(recyclerView, viewType);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+}
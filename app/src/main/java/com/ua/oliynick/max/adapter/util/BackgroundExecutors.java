@@ -0,0 +1,101 @@
+package com.ua.oliynick.max.adapter.util;
+
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holder of lazily created executors shared by adapters, all
+ * worker threads are daemon ones and run with background priority
+ */
+public final class BackgroundExecutors {
+
+    private BackgroundExecutors() {
+        throw new IllegalStateException("shouldn't be called");
+    }
+
+    /**
+     * @return number of threads used by {@link #computation()} executor
+     */
+    public static int parallelism() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Executor for CPU bound tasks, its size equals to
+     * {@link #parallelism()}. Tasks submitted to this executor
+     * mustn't block waiting for other tasks of the same executor
+     */
+    public static ExecutorService computation() {
+        return ComputationHolder.INSTANCE;
+    }
+
+    /**
+     * Single threaded executor, tasks are executed sequentially in
+     * submission order. Tasks may block waiting for {@link #computation()} tasks
+     */
+    public static ExecutorService serial() {
+        return SerialHolder.INSTANCE;
+    }
+
+    /**
+     * Single threaded executor for view inflation, it's kept apart from
+     * {@link #serial()}, so that long running tasks of one don't delay the other
+     */
+    public static ExecutorService inflation() {
+        return InflationHolder.INSTANCE;
+    }
+
+    /**
+     * Single threaded executor for display models prefetching, it's kept apart from
+     * {@link #computation()}, so that slow model creation doesn't stall sorting or search
+     */
+    public static ExecutorService prefetch() {
+        return PrefetchHolder.INSTANCE;
+    }
+
+    private static ThreadFactory newThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        r.run();
+                    }
+                }, prefix + counter.incrementAndGet());
+
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private static final class ComputationHolder {
+        static final ExecutorService INSTANCE =
+                Executors.newFixedThreadPool(parallelism(), newThreadFactory("sorted-adapter-computation-"));
+    }
+
+    private static final class SerialHolder {
+        static final ExecutorService INSTANCE =
+                Executors.newSingleThreadExecutor(newThreadFactory("sorted-adapter-serial-"));
+    }
+
+    private static final class InflationHolder {
+        static final ExecutorService INSTANCE =
+                Executors.newSingleThreadExecutor(newThreadFactory("sorted-adapter-inflation-"));
+    }
+
+    private static final class PrefetchHolder {
+        static final ExecutorService INSTANCE =
+                Executors.newSingleThreadExecutor(newThreadFactory("sorted-adapter-prefetch-"));
+    }
+
+}
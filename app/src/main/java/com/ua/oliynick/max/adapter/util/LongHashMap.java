@@ -0,0 +1,268 @@
+package com.ua.oliynick.max.adapter.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>
+ * Open addressing hash map whose keys are primitive {@code long} values,
+ * see {@link LongHashSet}. Null values aren't permitted
+ * </p>
+ * <p>
+ * This class isn't thread safe
+ * </p>
+ */
+public final class LongHashMap<V> {
+
+    private static final int MIN_CAPACITY = 8;
+    // 0 marks a free slot, the value for key 0 is stored separately
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private Object freeKeyValue;
+
+    public LongHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashMap(int expectedSize) {
+        Precondition.checkArgument(expectedSize >= 0, "Negative expected size");
+        allocate(capacityFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == FREE) {
+            return (V) freeKeyValue;
+        }
+
+        final long[] keys = this.keys;
+
+        for (int i = indexFor(key, mask); ; i = (i + 1) & mask) {
+            final long k = keys[i];
+
+            if (k == key) {
+                return (V) values[i];
+            }
+
+            if (k == FREE) {
+                return null;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Associates value with the given key
+     *
+     * @return previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        Precondition.isNotNull(value);
+
+        if (key == FREE) {
+            final V previous = (V) freeKeyValue;
+
+            if (previous == null) {
+                ++size;
+            }
+
+            freeKeyValue = value;
+            return previous;
+        }
+
+        final long[] keys = this.keys;
+        int i = indexFor(key, mask);
+
+        for (long k; (k = keys[i]) != FREE; i = (i + 1) & mask) {
+            if (k == key) {
+                final V previous = (V) values[i];
+
+                values[i] = value;
+                return previous;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+
+        if (++size > threshold(keys.length)) {
+            rehash(keys.length << 1);
+        }
+
+        return null;
+    }
+
+    /**
+     * Removes mapping for the given key
+     *
+     * @return removed value or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == FREE) {
+            final V previous = (V) freeKeyValue;
+
+            if (previous != null) {
+                freeKeyValue = null;
+                --size;
+            }
+
+            return previous;
+        }
+
+        final long[] keys = this.keys;
+        final int mask = this.mask;
+
+        for (int i = indexFor(key, mask); ; i = (i + 1) & mask) {
+            final long k = keys[i];
+
+            if (k == FREE) {
+                return null;
+            }
+
+            if (k == key) {
+                final V previous = (V) values[i];
+
+                shiftBack(i);
+                --size;
+                return previous;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all mappings from this map, capacity stays
+     * untouched so the map can be reused without allocations
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(values, null);
+            freeKeyValue = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * @return estimated retained size of this map in bytes excluding
+     * values themselves, see {@link MemoryLayout}
+     */
+    public long estimateBytes() {
+        // keys, values, freeKeyValue, mask and size fields
+        return MemoryLayout.object(3 * MemoryLayout.REFERENCE + 8) + MemoryLayout.array(keys.length, 8)
+                + MemoryLayout.referenceArray(values.length);
+    }
+
+    /**
+     * Copies values of this map into the given collection,
+     * iteration order is undefined
+     *
+     * @param out collection to add values to
+     */
+    @SuppressWarnings("unchecked")
+    public void copyValuesTo(Collection<? super V> out) {
+        if (freeKeyValue != null) {
+            out.add((V) freeKeyValue);
+        }
+
+        for (final Object value : values) {
+            if (value != null) {
+                out.add((V) value);
+            }
+        }
+    }
+
+    private void shiftBack(int gap) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        final int mask = this.mask;
+
+        for (int i = (gap + 1) & mask; ; i = (i + 1) & mask) {
+            final long key = keys[i];
+
+            if (key == FREE) {
+                break;
+            }
+
+            final int home = indexFor(key, mask);
+            // moves entry into the gap if its home index doesn't
+            // lie cyclically in range (gap, i]
+            if (gap <= i ? (home <= gap || home > i) : (home <= gap && home > i)) {
+                keys[gap] = key;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+
+        keys[gap] = FREE;
+        values[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+
+        allocate(capacity);
+
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        final int mask = this.mask;
+
+        for (int j = 0; j < oldKeys.length; ++j) {
+            final long key = oldKeys[j];
+
+            if (key != FREE) {
+                int i = indexFor(key, mask);
+
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int threshold(int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (threshold(capacity) < expectedSize) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private static int indexFor(long key, int mask) {
+        // fibonacci hashing spreads sequential ids
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+}
@@ -0,0 +1,258 @@
+package com.ua.oliynick.max.adapter.util;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Open addressing hash set of primitive {@code long} values. Unlike
+ * {@code HashSet<Long>} it doesn't box its elements and allocates nothing
+ * as long as its capacity is sufficient, which makes it suitable for
+ * key bookkeeping on large data sets
+ * </p>
+ * <p>
+ * This class isn't thread safe
+ * </p>
+ */
+public final class LongHashSet {
+
+    private static final int MIN_CAPACITY = 8;
+    // 0 marks a free slot, the value 0 itself is tracked separately
+    private static final long FREE = 0L;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean hasFree;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        Precondition.checkArgument(expectedSize >= 0, "Negative expected size");
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Adds value to this set
+     *
+     * @param value value to add
+     * @return true if set didn't contain the value
+     */
+    public boolean add(long value) {
+        if (value == FREE) {
+            if (hasFree) {
+                return false;
+            }
+
+            hasFree = true;
+            ++size;
+            return true;
+        }
+
+        final long[] slots = this.slots;
+        int i = indexFor(value, mask);
+
+        for (long slot; (slot = slots[i]) != FREE; i = (i + 1) & mask) {
+            if (slot == value) {
+                return false;
+            }
+        }
+
+        slots[i] = value;
+
+        if (++size > threshold(slots.length)) {
+            rehash(slots.length << 1);
+        }
+
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == FREE) {
+            return hasFree;
+        }
+
+        final long[] slots = this.slots;
+
+        for (int i = indexFor(value, mask); ; i = (i + 1) & mask) {
+            final long slot = slots[i];
+
+            if (slot == value) {
+                return true;
+            }
+
+            if (slot == FREE) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes value from this set
+     *
+     * @param value value to remove
+     * @return true if set contained the value
+     */
+    public boolean remove(long value) {
+        if (value == FREE) {
+            if (!hasFree) {
+                return false;
+            }
+
+            hasFree = false;
+            --size;
+            return true;
+        }
+
+        final long[] slots = this.slots;
+        final int mask = this.mask;
+
+        for (int i = indexFor(value, mask); ; i = (i + 1) & mask) {
+            final long slot = slots[i];
+
+            if (slot == FREE) {
+                return false;
+            }
+
+            if (slot == value) {
+                shiftBack(i);
+                --size;
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values from this set, capacity stays
+     * untouched so the set can be reused without allocations
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, FREE);
+            size = 0;
+            hasFree = false;
+        }
+    }
+
+    /**
+     * Returns values of this set, iteration order is undefined
+     *
+     * @return new array of values
+     */
+    public long[] toArray() {
+        final long[] result = new long[size];
+        int n = 0;
+
+        if (hasFree) {
+            result[n++] = FREE;
+        }
+
+        for (final long slot : slots) {
+            if (slot != FREE) {
+                result[n++] = slot;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return estimated retained size of this set in bytes, see {@link MemoryLayout}
+     */
+    public long estimateBytes() {
+        // slots, mask, size and hasFree fields
+        return MemoryLayout.object(MemoryLayout.REFERENCE + 9) + MemoryLayout.array(slots.length, 8);
+    }
+
+    /**
+     * Makes sure that given number of values can be added
+     * without rehashing
+     *
+     * @param expectedSize expected size of this set
+     */
+    public void ensureCapacity(int expectedSize) {
+        final int capacity = capacityFor(expectedSize);
+
+        if (capacity > slots.length) {
+            rehash(capacity);
+        }
+    }
+
+    private void shiftBack(int gap) {
+        final long[] slots = this.slots;
+        final int mask = this.mask;
+
+        for (int i = (gap + 1) & mask; ; i = (i + 1) & mask) {
+            final long slot = slots[i];
+
+            if (slot == FREE) {
+                break;
+            }
+
+            final int home = indexFor(slot, mask);
+            // moves slot into the gap if its home index doesn't
+            // lie cyclically in range (gap, i]
+            if (gap <= i ? (home <= gap || home > i) : (home <= gap && home > i)) {
+                slots[gap] = slot;
+                gap = i;
+            }
+        }
+
+        slots[gap] = FREE;
+    }
+
+    private void rehash(int capacity) {
+        final long[] old = slots;
+
+        allocate(capacity);
+
+        final long[] slots = this.slots;
+        final int mask = this.mask;
+
+        for (final long value : old) {
+            if (value != FREE) {
+                int i = indexFor(value, mask);
+
+                while (slots[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+
+                slots[i] = value;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int threshold(int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (threshold(capacity) < expectedSize) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private static int indexFor(long value, int mask) {
+        // fibonacci hashing spreads sequential ids
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+}
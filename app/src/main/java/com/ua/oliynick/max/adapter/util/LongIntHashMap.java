@@ -0,0 +1,147 @@
+package com.ua.oliynick.max.adapter.util;
+
+/**
+ * <p>
+ * Open addressing hash map of primitive {@code long} keys to primitive {@code int} values,
+ * see {@link LongHashMap}. Neither keys nor values are boxed, which makes it suitable for
+ * mapping keys to positions on large data sets. Mappings can't be removed
+ * </p>
+ * <p>
+ * This class isn't thread safe
+ * </p>
+ */
+public final class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 8;
+    // 0 marks a free slot, the value for key 0 is stored separately
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public LongIntHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        Precondition.checkArgument(expectedSize >= 0, "Negative expected size");
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key          key to look for
+     * @param defaultValue value to return if there is no mapping for the key
+     * @return value associated with the key or the default value
+     */
+    public int get(long key, int defaultValue) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+
+        final long[] keys = this.keys;
+
+        for (int i = indexFor(key, mask); ; i = (i + 1) & mask) {
+            final long k = keys[i];
+
+            if (k == key) {
+                return values[i];
+            }
+
+            if (k == FREE) {
+                return defaultValue;
+            }
+        }
+    }
+
+    /**
+     * Associates value with the given key, previous value is replaced
+     */
+    public void put(long key, int value) {
+        if (key == FREE) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                ++size;
+            }
+
+            freeKeyValue = value;
+            return;
+        }
+
+        final long[] keys = this.keys;
+        int i = indexFor(key, mask);
+
+        for (long k; (k = keys[i]) != FREE; i = (i + 1) & mask) {
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+
+        if (++size > threshold(keys.length)) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+
+        allocate(capacity);
+
+        final long[] keys = this.keys;
+        final int[] values = this.values;
+        final int mask = this.mask;
+
+        for (int j = 0; j < oldKeys.length; ++j) {
+            final long key = oldKeys[j];
+
+            if (key != FREE) {
+                int i = indexFor(key, mask);
+
+                while (keys[i] != FREE) {
+                    i = (i + 1) & mask;
+                }
+
+                keys[i] = key;
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int threshold(int capacity) {
+        return capacity - (capacity >>> 2);
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+
+        while (threshold(capacity) < expectedSize) {
+            capacity <<= 1;
+        }
+
+        return capacity;
+    }
+
+    private static int indexFor(long key, int mask) {
+        // fibonacci hashing spreads sequential ids
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+}
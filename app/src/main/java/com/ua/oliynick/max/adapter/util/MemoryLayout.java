@@ -0,0 +1,58 @@
+package com.ua.oliynick.max.adapter.util;
+
+/**
+ * <p>
+ * Rough model of object layout used to estimate retained memory. Assumes
+ * 4-byte references, 8-byte object headers, 12-byte array headers and
+ * 8-byte alignment, which matches ART and 64-bit HotSpot with compressed oops.
+ * </p>
+ * <p>
+ * Estimations are approximate and are meant to compare structures and
+ * track trends, not to account every byte
+ * </p>
+ */
+public final class MemoryLayout {
+
+    public static final int REFERENCE = 4;
+    public static final int OBJECT_HEADER = 8;
+    public static final int ARRAY_HEADER = 12;
+    public static final int ALIGNMENT = 8;
+
+    private MemoryLayout() {
+        throw new IllegalStateException("shouldn't be called");
+    }
+
+    public static long align(long bytes) {
+        return (bytes + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * @param fieldBytes total size of object fields
+     * @return estimated shallow size of object
+     */
+    public static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + fieldBytes);
+    }
+
+    /**
+     * @param length       array length
+     * @param elementBytes size of a single element, e.g. 8 for {@code long}
+     * @return estimated size of array
+     */
+    public static long array(int length, int elementBytes) {
+        return align(ARRAY_HEADER + (long) length * elementBytes);
+    }
+
+    public static long referenceArray(int length) {
+        return array(length, REFERENCE);
+    }
+
+    /**
+     * @return estimated size of string including its char array
+     */
+    public static long string(int length) {
+        // value reference, count and hash fields
+        return object(REFERENCE + 8) + array(length, 2);
+    }
+
+}
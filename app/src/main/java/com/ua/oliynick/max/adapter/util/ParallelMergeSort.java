@@ -0,0 +1,167 @@
+package com.ua.oliynick.max.adapter.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Stable merge sort which splits array into chunks, sorts them
+ * concurrently and then merges sorted runs pairwise, each merge round
+ * runs concurrently as well. Small arrays are sorted on the calling thread
+ * </p>
+ * <p>
+ * {@code Arrays.parallelSort} and fork-join pool aren't available on
+ * the supported API levels, that's why plain {@link ExecutorService} is used
+ * </p>
+ */
+public final class ParallelMergeSort {
+
+    /**
+     * Arrays smaller than this threshold are sorted sequentially
+     */
+    public static final int MIN_PARALLEL_SIZE = 1 << 13;
+
+    private ParallelMergeSort() {
+        throw new IllegalStateException("shouldn't be called");
+    }
+
+    /**
+     * Sorts given array using {@link BackgroundExecutors#computation()}
+     * executor, the calling thread blocks until array is sorted
+     *
+     * @param a          array to sort
+     * @param comparator comparator to apply
+     */
+    public static <T> void sort(T[] a, Comparator<? super T> comparator) {
+        sort(a, comparator, BackgroundExecutors.computation(), BackgroundExecutors.parallelism());
+    }
+
+    /**
+     * Sorts given array, the calling thread blocks until array is sorted.
+     * Mustn't be called from a thread which belongs to the given executor
+     *
+     * @param a           array to sort
+     * @param comparator  comparator to apply
+     * @param executor    executor to run chunk sorts and merges on
+     * @param parallelism max number of chunks to sort concurrently
+     */
+    public static <T> void sort(final T[] a, final Comparator<? super T> comparator,
+                                ExecutorService executor, int parallelism) {
+        Precondition.isNotNullAll(a, comparator, executor);
+
+        final int n = a.length;
+        final int chunks = Math.min(parallelism, n / (MIN_PARALLEL_SIZE >> 1));
+
+        if (n < MIN_PARALLEL_SIZE || chunks < 2) {
+            Arrays.sort(a, comparator);
+            return;
+        }
+        // bounds[i] is the start of i-th run, bounds[runs] == n
+        int[] bounds = new int[chunks + 1];
+
+        for (int i = 0; i <= chunks; ++i) {
+            bounds[i] = (int) ((long) n * i / chunks);
+        }
+
+        final List<Callable<Void>> tasks = new ArrayList<>(chunks);
+
+        for (int i = 0; i < chunks; ++i) {
+            final int from = bounds[i], to = bounds[i + 1];
+
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Arrays.sort(a, from, to, comparator);
+                    return null;
+                }
+            });
+        }
+
+        invokeAll(executor, tasks);
+
+        T[] src = a;
+        T[] dst = Arrays.copyOf(a, n);
+
+        for (int runs = chunks; runs > 1; runs = (runs + 1) >> 1) {
+            final int[] nextBounds = new int[((runs + 1) >> 1) + 1];
+            final T[] from = src, to = dst;
+
+            tasks.clear();
+
+            for (int i = 0; i < runs; i += 2) {
+                final int lo = bounds[i];
+                final int mid = bounds[Math.min(i + 1, runs)];
+                final int hi = bounds[Math.min(i + 2, runs)];
+
+                nextBounds[i >> 1] = lo;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        merge(from, to, lo, mid, hi, comparator);
+                        return null;
+                    }
+                });
+            }
+
+            nextBounds[nextBounds.length - 1] = n;
+            invokeAll(executor, tasks);
+
+            bounds = nextBounds;
+            src = to;
+            dst = from;
+        }
+
+        if (src != a) {
+            System.arraycopy(src, 0, a, 0, n);
+        }
+    }
+
+    private static <T> void merge(T[] src, T[] dst, int lo, int mid, int hi, Comparator<? super T> comparator) {
+        int i = lo, j = mid, k = lo;
+
+        while (i < mid && j < hi) {
+            // takes left element on ties to keep sort stable
+            dst[k++] = comparator.compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+        }
+
+        if (i < mid) {
+            System.arraycopy(src, i, dst, k, mid - i);
+        } else if (j < hi) {
+            System.arraycopy(src, j, dst, k, hi - j);
+        }
+    }
+
+    private static void invokeAll(ExecutorService executor, List<Callable<Void>> tasks) {
+        final List<Future<Void>> futures;
+
+        try {
+            futures = executor.invokeAll(tasks);
+
+            for (final Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sorting", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IllegalStateException(cause);
+        }
+    }
+
+}
@@ -0,0 +1,11 @@
+package com.ua.oliynick.max.test;
+
+import lombok.Value;
+
+/**
+ * Bind-ready representation of {@link Post}
+ */
+@Value
+public class PostDisplayModel {
+    String timestamp, username, body;
+}
@@ -32,15 +32,15 @@ public final class PostViewHolderAdapter extends ViewHolderAdapter<Post> {
 
     @Override
     protected void onBindViewHolder(@NotNull RecyclerView.ViewHolder holder, @NotNull List<Object> payload, int position, @NotNull SortedAdapter<Post> adapter) {
-        val post = adapter.getItem(position);
+        val model = (PostDisplayModel) adapter.getDisplayModel(position);
 
         final TextView timestamp = holder.itemView.findViewById(R.id.timestamp);
         final TextView title = holder.itemView.findViewById(R.id.title);
         final TextView body = holder.itemView.findViewById(R.id.body);
 
-        timestamp.setText(post.getTimestamp().toGMTString());
-        title.setText(post.getUsername());
-        body.setText(post.getBody());
+        timestamp.setText(model.getTimestamp());
+        title.setText(model.getUsername());
+        body.setText(model.getBody());
     }
 
     @Override
@@ -48,6 +48,18 @@ public final class PostViewHolderAdapter extends ViewHolderAdapter<Post> {
 
     }
 
+    @NotNull
+    @Override
+    protected Object onCreateDisplayModel(@NotNull Post post) {
+        return new PostDisplayModel(post.getTimestamp().toGMTString(), post.getUsername(), post.getBody());
+    }
+
+    @Override
+    protected int getWarmUpCount() {
+        // enough to fill the screen on the first fling
+        return 8;
+    }
+
     @NotNull
     @Override
     protected RecyclerView.ViewHolder onCreateViewHolder(@NotNull ViewGroup parent) {
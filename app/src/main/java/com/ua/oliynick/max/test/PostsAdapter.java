@@ -1,6 +1,7 @@
 package com.ua.oliynick.max.test;
 
 import com.ua.oliynick.max.adapter.SortedAdapter;
+import com.ua.oliynick.max.adapter.TextExtractor;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -26,10 +27,20 @@ public final class PostsAdapter extends SortedAdapter<Post> {
         }
     };
 
+    private static final TextExtractor<Post> SEARCH_TEXT = new TextExtractor<Post>() {
+        @NotNull
+        @Override
+        public String getSearchText(@NotNull Post item) {
+            return item.getUsername() + '\n' + item.getBody();
+        }
+    };
+
     private boolean isAscending = false;
 
     public PostsAdapter() {
         super(DESCENDING_CMP, new PostViewHolderAdapter(), new HeaderViewHolderAdapter());
+        setDisplayModelCache(128, 10);
+        setSearchTextExtractor(SEARCH_TEXT);
     }
 
     @Override
@@ -44,7 +55,7 @@ public final class PostsAdapter extends SortedAdapter<Post> {
 
     @Override
     public int getItemCount() {
-        return getData().size() + 1;
+        return getVisibleItemCount() + 1;
     }
 
     public void toggleComparator() {
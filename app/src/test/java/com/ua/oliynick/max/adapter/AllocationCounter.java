@@ -0,0 +1,75 @@
+package com.ua.oliynick.max.adapter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Counts bytes allocated by the current thread, relies on
+ * HotSpot specific {@code com.sun.management.ThreadMXBean}
+ */
+final class AllocationCounter {
+
+    interface Operation {
+
+        void run(int iteration);
+
+    }
+
+    private static final int ROUNDS = 3;
+
+    private static final Operation NO_OP = new Operation() {
+        @Override
+        public void run(int iteration) {
+        }
+    };
+
+    private AllocationCounter() {
+        throw new IllegalStateException("shouldn't be called");
+    }
+
+    static boolean isSupported() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        return threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled();
+    }
+
+    /**
+     * Runs operation {@code warmUp} times, so that lazy initialization and
+     * JIT compilation are done, and then measures allocations of the following
+     * {@code iterations} runs. Measurement is repeated several times and the
+     * smallest result is taken, since one-off allocations, for example, made
+     * by on-stack replacement of the measuring loop, can sneak into a single round
+     *
+     * @return number of bytes allocated by measured runs, measurement overhead excluded
+     */
+    static long measure(Operation operation, int warmUp, int iterations) {
+        for (int i = 0; i < warmUp; ++i) {
+            operation.run(i);
+        }
+
+        long result = Long.MAX_VALUE;
+
+        for (int round = 0; round < ROUNDS && result > 0; ++round) {
+            final long overhead = allocatedBytes(NO_OP, iterations);
+
+            result = Math.min(result, Math.max(0, allocatedBytes(operation, iterations) - overhead));
+        }
+
+        return result;
+    }
+
+    private static long allocatedBytes(Operation operation, int iterations) {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long start = threads.getThreadAllocatedBytes(threadId);
+
+        for (int i = 0; i < iterations; ++i) {
+            operation.run(i);
+        }
+
+        return threads.getThreadAllocatedBytes(threadId) - start;
+    }
+}
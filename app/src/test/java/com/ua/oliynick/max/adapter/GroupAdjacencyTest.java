@@ -0,0 +1,175 @@
+package com.ua.oliynick.max.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that item which would split a group is rejected before data set, search
+ * index and sections are changed, so that adapter stays consistent and usable
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class GroupAdjacencyTest {
+
+    // group is chosen by version, so it can disagree with sort order
+    private static final GroupKeyProvider<TestItem> GROUPS = new GroupKeyProvider<TestItem>() {
+        @Override
+        public long getGroupKey(TestItem item) {
+            return item.version;
+        }
+    };
+
+    private static final GroupKeyProvider<TestItem> SECTIONS = new GroupKeyProvider<TestItem>() {
+        @Override
+        public long getGroupKey(TestItem item) {
+            return item.sortKey / 10;
+        }
+    };
+
+    private static final TextExtractor<TestItem> TEXT = new TextExtractor<TestItem>() {
+        @NotNull
+        @Override
+        public String getSearchText(@NotNull TestItem item) {
+            return "key" + item.key + "group" + item.version;
+        }
+    };
+
+    private TestAdapter adapter;
+    private NotificationRecorder recorder;
+
+    @Before
+    public void setUp() {
+        adapter = new TestAdapter(TestItem.ASCENDING);
+        recorder = new NotificationRecorder(adapter);
+        adapter.registerAdapterDataObserver(recorder);
+        adapter.onAttachedToRecyclerView(new RecyclerView(RuntimeEnvironment.application));
+        adapter.setCoalescingWindow(TimeUnit.HOURS.toMillis(1));
+        adapter.setGroupKeyProvider(GROUPS);
+        adapter.setSectionKeyProvider(SECTIONS);
+        adapter.setSearchTextExtractor(TEXT);
+        // group 0 holds sort keys [0, 5), group 1 holds [5, 10)
+        for (int i = 0; i < 10; ++i) {
+            adapter.addOrUpdate(new TestItem(i, i, i / 5));
+        }
+
+        recorder.verify(adapter.getData());
+    }
+
+    @Test
+    public void insertionInsideAnotherGroup() {
+        assertRejected(new TestItem(100, 2, 7));
+        assertRejected(new TestItem(101, 7, 0));
+    }
+
+    @Test
+    public void insertionApartFromItsGroup() {
+        assertRejected(new TestItem(102, 20, 0));
+    }
+
+    @Test
+    public void updateMovingItemToAnotherGroup() {
+        assertRejected(new TestItem(2, 2, 1));
+    }
+
+    @Test
+    public void scheduledUpdateChangingSortPosition() {
+        final List<TestItem> before = new ArrayList<>(adapter.getData());
+
+        adapter.scheduleAddOrUpdate(new TestItem(2, 7, 0));
+
+        try {
+            adapter.flushPendingUpdates();
+            fail("Update splits group 0");
+        } catch (IllegalStateException expected) {
+        }
+
+        verifyUnchanged(before);
+        assertTrue(adapter.search("key2group0").contains(before.get(2)));
+    }
+
+    @Test
+    public void adjacentItemsAreAccepted() {
+        // joins group 1 at its end
+        adapter.addOrUpdate(new TestItem(103, 12, 1));
+        // single item group replaced by another one
+        adapter.addOrUpdate(new TestItem(104, 30, 2));
+        adapter.addOrUpdate(new TestItem(104, 30, 3));
+        adapter.addOrUpdate(new TestItem(105, 50, 4));
+        // single item group moves to the end of data set
+        adapter.scheduleAddOrUpdate(new TestItem(104, 60, 3));
+        adapter.flushPendingUpdates();
+
+        final List<TestItem> data = adapter.getData();
+
+        assertEquals(13, data.size());
+        assertEquals(105, data.get(11).key);
+        assertEquals(new TestItem(104, 60, 3), data.get(12));
+        recorder.verify(data);
+    }
+
+    private void assertRejected(TestItem item) {
+        final List<TestItem> before = new ArrayList<>(adapter.getData());
+
+        try {
+            adapter.addOrUpdate(item);
+            fail(item + " splits a group");
+        } catch (IllegalStateException expected) {
+        }
+
+        verifyUnchanged(before);
+        assertEquals("Rejected item is searchable", countGroup(before, item.version),
+                adapter.search("group" + item.version).size());
+    }
+
+    private void verifyUnchanged(List<TestItem> before) {
+        assertEquals(before, adapter.getData());
+        recorder.verify(before);
+
+        for (int i = 0; i < before.size(); ++i) {
+            assertEquals("Section start for position " + i, i / 10 * 10, adapter.getSectionStart(i));
+        }
+        // collapsed group 0 shows its first item only
+        adapter.toggleGroup(0);
+        assertEquals(before.size() - 4, adapter.getItemCount());
+        adapter.toggleGroup(0);
+        assertEquals(before.size(), adapter.getItemCount());
+        recorder.verify(before);
+        // adapter accepts valid items afterwards
+        final TestItem valid = new TestItem(200, 100, 9);
+
+        adapter.addOrUpdate(valid);
+        assertEquals(before.size() + 1, adapter.getData().size());
+        recorder.verify(adapter.getData());
+        adapter.remove(Collections.singletonList(valid));
+        recorder.verify(before);
+    }
+
+    private static int countGroup(List<TestItem> items, int group) {
+        int count = 0;
+
+        for (final TestItem item : items) {
+            if (item.version == group) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.ua.oliynick.max.adapter;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks estimations reported by {@link SortedAdapter#getMemoryFootprint()} for
+ * large data sets and that optional structures are reported only when enabled
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MemoryFootprintTest {
+
+    private static final int ROWS = 100_000;
+    private static final Set<String> ALWAYS_REPORTED =
+            new LinkedHashSet<>(Arrays.asList("data", "viewHolders", "debugKeys", "pendingUpdates"));
+
+    private static final GroupKeyProvider<TestItem> GROUPS = new GroupKeyProvider<TestItem>() {
+        @Override
+        public long getGroupKey(TestItem item) {
+            return item.sortKey / 100;
+        }
+    };
+
+    private static final TextExtractor<TestItem> TEXT = new TextExtractor<TestItem>() {
+        @NotNull
+        @Override
+        public String getSearchText(@NotNull TestItem item) {
+            return "item " + item.key;
+        }
+    };
+
+    private List<TestItem> items;
+
+    @Before
+    public void setUp() {
+        items = new ArrayList<>(ROWS);
+
+        for (int i = 0; i < ROWS; ++i) {
+            items.add(new TestItem(i, i, 0));
+        }
+    }
+
+    @Test
+    public void arrayListCostsReferencePerRow() {
+        final TestAdapter adapter = new TestAdapter(TestItem.ASCENDING);
+
+        adapter.replaceAll(items);
+        // no spare capacity is assumed
+        assertDataBytesPerRow(adapter.getMemoryFootprint(), 4.0, 4.01);
+    }
+
+    @Test
+    public void compactListCostsReferencePerRow() {
+        final TestAdapter adapter = new TestAdapter(TestItem.ASCENDING) {
+            @Override
+            protected List<TestItem> createList() {
+                return new CompactList<>();
+            }
+        };
+
+        adapter.replaceAll(items);
+        // at most two spare chunks of 1024 references
+        assertDataBytesPerRow(adapter.getMemoryFootprint(), 4.0, 4.1);
+    }
+
+    @Test
+    public void snapshotListCostsTreeNodes() {
+        final TestAdapter adapter = new TestAdapter(TestItem.ASCENDING) {
+            @Override
+            protected List<TestItem> createList() {
+                return new SnapshotList<>();
+            }
+        };
+
+        adapter.replaceAll(items);
+        // a full leaf of 32 references takes 160 bytes, branches add a bit
+        assertDataBytesPerRow(adapter.getMemoryFootprint(), 5.0, 5.5);
+    }
+
+    @Test
+    public void compactListReleasesChunks() {
+        final CompactList<TestItem> list = new CompactList<>();
+
+        for (final TestItem item : items) {
+            list.add(item);
+        }
+
+        final long full = list.estimateBytes();
+
+        assertTrue("Estimate of " + full + " bytes for " + ROWS + " rows",
+                full >= 4L * ROWS && full <= 4.1 * ROWS);
+
+        while (list.size() > ROWS / 100) {
+            list.remove(list.size() - 1);
+        }
+
+        assertTrue("Chunks weren't released", list.estimateBytes() < full / 10);
+    }
+
+    @Test
+    public void optionalStructuresAreReportedWhenEnabled() {
+        final TestAdapter adapter = new TestAdapter(TestItem.ASCENDING);
+
+        adapter.replaceAll(items);
+        assertEquals(ALWAYS_REPORTED, adapter.getMemoryFootprint().getStructures().keySet());
+
+        adapter.setGroupKeyProvider(GROUPS);
+        assertReported(adapter, "groups");
+        adapter.setSectionKeyProvider(GROUPS);
+        assertReported(adapter, "groups", "sections");
+        adapter.setSearchTextExtractor(TEXT);
+        assertReported(adapter, "groups", "sections", "searchIndex");
+        adapter.setDisplayModelCache(100, 10);
+        assertReported(adapter, "groups", "sections", "searchIndex", "displayModels");
+
+        adapter.setGroupKeyProvider(null);
+        adapter.setSectionKeyProvider(null);
+        adapter.setSearchTextExtractor(null);
+        adapter.setDisplayModelCache(0, 0);
+        assertEquals(ALWAYS_REPORTED, adapter.getMemoryFootprint().getStructures().keySet());
+    }
+
+    private static void assertDataBytesPerRow(MemoryFootprint footprint, double min, double max) {
+        final double perRow = (double) footprint.getStructures().get("data") / ROWS;
+
+        assertEquals(ROWS, footprint.getItemCount());
+        assertTrue("Data costs " + perRow + " bytes per row, " + footprint, perRow >= min && perRow <= max);
+        // the rest of structures are small without optional ones
+        assertTrue(footprint.toString(), footprint.getBytesPerItem() < max + 0.1);
+    }
+
+    private static void assertReported(SortedAdapter<TestItem> adapter, String... optional) {
+        final MemoryFootprint footprint = adapter.getMemoryFootprint();
+        final Set<String> expected = new LinkedHashSet<>(ALWAYS_REPORTED);
+
+        expected.addAll(Arrays.asList(optional));
+        assertEquals(expected, footprint.getStructures().keySet());
+
+        for (final String name : optional) {
+            assertTrue(name + " isn't estimated", footprint.getStructures().get(name) > 0);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.ua.oliynick.max.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Observer which replays adapter notifications against a shadow list,
+ * just like {@link RecyclerView} does with its view holders. Inserted and
+ * changed positions are marked as dirty, the rest of shadow list must keep
+ * items equal to the ones it had when it was last verified.
+ * </p>
+ * <p>
+ * Also counts dispatched notifications, so tests can check
+ * that adapter doesn't notify more than necessary
+ * </p>
+ */
+final class NotificationRecorder extends RecyclerView.AdapterDataObserver {
+
+    // marks positions which should be rebound
+    private static final Object DIRTY = new Object();
+
+    // item count is read when whole data set changes
+    private final RecyclerView.Adapter<?> adapter;
+    private final List<Object> shadow = new ArrayList<>();
+    private int inserted, removed, changed, moved, dataSetChanged;
+    private int events;
+
+    NotificationRecorder(RecyclerView.Adapter<?> adapter) {
+        this.adapter = adapter;
+        reset(adapter.getItemCount());
+    }
+
+    @Override
+    public void onChanged() {
+        ++events;
+        ++dataSetChanged;
+        reset(adapter.getItemCount());
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount) {
+        ++events;
+        changed += itemCount;
+        checkRange(positionStart, itemCount, shadow.size());
+
+        for (int i = 0; i < itemCount; ++i) {
+            shadow.set(positionStart + i, DIRTY);
+        }
+    }
+
+    @Override
+    public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+        onItemRangeChanged(positionStart, itemCount);
+    }
+
+    @Override
+    public void onItemRangeInserted(int positionStart, int itemCount) {
+        ++events;
+        inserted += itemCount;
+        checkRange(positionStart, 0, shadow.size());
+
+        for (int i = 0; i < itemCount; ++i) {
+            shadow.add(positionStart, DIRTY);
+        }
+    }
+
+    @Override
+    public void onItemRangeRemoved(int positionStart, int itemCount) {
+        ++events;
+        removed += itemCount;
+        checkRange(positionStart, itemCount, shadow.size());
+
+        for (int i = 0; i < itemCount; ++i) {
+            shadow.remove(positionStart);
+        }
+    }
+
+    @Override
+    public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+        ++events;
+        moved += itemCount;
+
+        if (itemCount != 1) {
+            throw new AssertionError("RecyclerView supports moves of a single item only, got " + itemCount);
+        }
+
+        checkRange(fromPosition, 1, shadow.size());
+        checkRange(toPosition, 1, shadow.size());
+        shadow.add(toPosition, shadow.remove(fromPosition));
+    }
+
+    /**
+     * Checks that shadow list matches the expected items and takes them as verified
+     * state; positions which weren't notified as inserted or changed must hold
+     * equal items
+     *
+     * @param expected items adapter shows now, in adapter positions
+     */
+    void verify(List<?> expected) {
+        if (shadow.size() != expected.size()) {
+            throw new AssertionError("Expected " + expected.size() + " items, but notifications produced "
+                    + shadow.size());
+        }
+
+        for (int i = 0; i < expected.size(); ++i) {
+            final Object item = shadow.get(i);
+
+            if (item != DIRTY && !item.equals(expected.get(i))) {
+                throw new AssertionError("Stale item at position " + i + ", shown " + item
+                        + ", but expected " + expected.get(i));
+            }
+
+            shadow.set(i, expected.get(i));
+        }
+    }
+
+    int getInserted() {
+        return inserted;
+    }
+
+    int getRemoved() {
+        return removed;
+    }
+
+    int getChanged() {
+        return changed;
+    }
+
+    int getMoved() {
+        return moved;
+    }
+
+    int getDataSetChanged() {
+        return dataSetChanged;
+    }
+
+    /**
+     * @return total number of received notifications
+     */
+    int getEvents() {
+        return events;
+    }
+
+    private void reset(int size) {
+        shadow.clear();
+
+        for (int i = 0; i < size; ++i) {
+            shadow.add(DIRTY);
+        }
+    }
+
+    private static void checkRange(int start, int count, int size) {
+        if (start < 0 || count < 0 || start + count > size) {
+            throw new AssertionError("Range [" + start + ", " + (start + count) + ") is out of bounds, size is " + size);
+        }
+    }
+
+}
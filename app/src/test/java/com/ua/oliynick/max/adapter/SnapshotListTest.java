@@ -0,0 +1,193 @@
+package com.ua.oliynick.max.adapter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs random mutations against {@link SnapshotList} and {@link ArrayList} and compares
+ * them after each step. Snapshots taken along the way are kept together with copies
+ * of expected contents and rechecked after later mutations
+ */
+public class SnapshotListTest {
+
+    private static final long SEED = Long.getLong("fuzz.seed", System.nanoTime());
+    // enough to build a tree of three levels
+    private static final int MAX_SIZE = 5_000;
+    private static final int MAX_SNAPSHOTS = 16;
+
+    private final Random random = new Random(SEED);
+    private final SnapshotList<Integer> list = new SnapshotList<>();
+    private final List<Integer> expected = new ArrayList<>();
+    private final List<List<Integer>> snapshots = new ArrayList<>();
+    private final List<List<Integer>> snapshotContents = new ArrayList<>();
+    private int next;
+
+    @Test
+    public void growAndShrink() {
+        for (int round = 0; round < 3; ++round) {
+            // leaves and branches are split while growing
+            while (expected.size() < MAX_SIZE) {
+                step(80);
+            }
+            // underflown nodes are merged and root collapses while shrinking
+            while (!expected.isEmpty()) {
+                step(20);
+            }
+
+            assertEquals(0, list.size());
+            verifySnapshots();
+        }
+    }
+
+    @Test
+    public void bulkBuildAndShrink() {
+        for (final int size : new int[]{1, 31, 32, 33, 1_024, 1_025, MAX_SIZE}) {
+            list.clear();
+            expected.clear();
+
+            final Integer[] items = new Integer[size];
+
+            for (int i = 0; i < size; ++i) {
+                items[i] = next++;
+            }
+            // items are added to empty list in bulk
+            list.addAll(Arrays.asList(items));
+            expected.addAll(Arrays.asList(items));
+            verify();
+            takeSnapshot();
+
+            while (!expected.isEmpty()) {
+                step(30);
+            }
+
+            verifySnapshots();
+        }
+    }
+
+    @Test
+    public void appendToNonEmptyList() {
+        final List<Integer> items = new ArrayList<>();
+
+        for (int i = 0; i < 100; ++i) {
+            items.add(next++);
+        }
+
+        list.addAll(items);
+        expected.addAll(items);
+        takeSnapshot();
+        list.addAll(items);
+        expected.addAll(items);
+        verify();
+        verifySnapshots();
+    }
+
+    @Test
+    public void outOfBounds() {
+        list.add(1);
+
+        for (final int index : new int[]{-1, 1}) {
+            try {
+                list.get(index);
+                fail("Index " + index + " is out of bounds");
+            } catch (IndexOutOfBoundsException ignored) {
+            }
+
+            try {
+                list.snapshot().get(index);
+                fail("Index " + index + " is out of bounds");
+            } catch (IndexOutOfBoundsException ignored) {
+            }
+        }
+    }
+
+    /**
+     * @param insertPercent chance of insertion, the rest of operations are removals and replacements
+     */
+    private void step(int insertPercent) {
+        final int dice = random.nextInt(100);
+        final int size = expected.size();
+
+        try {
+            if (dice < insertPercent || size == 0) {
+                final int index = position(size + 1);
+
+                list.add(index, next);
+                expected.add(index, next++);
+            } else if (dice < insertPercent + (100 - insertPercent) * 3 / 4) {
+                final int index = position(size);
+
+                assertEquals(expected.remove(index), list.remove(index));
+            } else {
+                final int index = position(size);
+
+                assertEquals(expected.set(index, next), list.set(index, next++));
+            }
+
+            if (random.nextInt(50) == 0) {
+                takeSnapshot();
+            }
+
+            verify();
+
+            if (!snapshots.isEmpty() && random.nextInt(20) == 0) {
+                final int i = random.nextInt(snapshots.size());
+
+                assertEquals("Snapshot changed", snapshotContents.get(i), snapshots.get(i));
+            }
+        } catch (AssertionError | RuntimeException e) {
+            throw new AssertionError("Step failed at size " + size + ", seed " + SEED, e);
+        }
+    }
+
+    /**
+     * @return random position, biased towards list ends
+     */
+    private int position(int bound) {
+        final int dice = random.nextInt(10);
+
+        if (dice == 0) {
+            return 0;
+        }
+
+        return dice == 1 ? bound - 1 : random.nextInt(bound);
+    }
+
+    private void takeSnapshot() {
+        if (snapshots.size() == MAX_SNAPSHOTS) {
+            final int i = random.nextInt(MAX_SNAPSHOTS);
+
+            snapshots.remove(i);
+            snapshotContents.remove(i);
+        }
+
+        snapshots.add(list.snapshot());
+        snapshotContents.add(new ArrayList<>(expected));
+    }
+
+    private void verify() {
+        assertEquals("Size", expected.size(), list.size());
+
+        if (expected.size() < 200 || random.nextInt(20) == 0) {
+            // full comparison is quadratic over the whole run
+            assertEquals(expected, list);
+        } else {
+            final int i = random.nextInt(expected.size());
+
+            assertEquals("Item at " + i, expected.get(i), list.get(i));
+        }
+    }
+
+    private void verifySnapshots() {
+        for (int i = 0; i < snapshots.size(); ++i) {
+            assertEquals("Snapshot " + i, snapshotContents.get(i), snapshots.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.ua.oliynick.max.adapter;
+
+import android.support.v7.widget.RecyclerView;
+import android.widget.FrameLayout;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks that bind, view type and single item mutation paths
+ * don't allocate once adapter reached steady state
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SortedAdapterAllocationTest {
+
+    private static final int SIZE = 1000;
+    private static final int WARM_UP = 20_000;
+    private static final int ITERATIONS = 100_000;
+
+    private TestAdapter adapter;
+    private TestItem[] items;
+    private TestItem[] updates;
+    private List<List<TestItem>> inserts;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue("Allocation counting isn't supported by JVM", AllocationCounter.isSupported());
+
+        adapter = new TestAdapter(TestItem.ASCENDING);
+        items = new TestItem[SIZE];
+        updates = new TestItem[SIZE];
+        inserts = new ArrayList<>(SIZE);
+
+        for (int i = 0; i < SIZE; ++i) {
+            // even sort keys for data set items, odd ones for inserted items
+            items[i] = new TestItem(i, i * 2, 0);
+            updates[i] = new TestItem(i, i * 2, 1);
+            inserts.add(Collections.singletonList(new TestItem(SIZE + i, i * 2 + 1, 0)));
+        }
+
+        adapter.addOrUpdate(Arrays.asList(items));
+        // notifications should reach at least one observer
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+        });
+    }
+
+    @Test
+    public void bindDoesNotAllocate() {
+        final RecyclerView.ViewHolder holder = adapter.createViewHolder(new FrameLayout(RuntimeEnvironment.application), 0);
+        final List<Object> payloads = Collections.emptyList();
+
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                final int position = iteration % SIZE;
+
+                adapter.onBindViewHolder(holder, position, payloads);
+                adapter.onBindViewHolder(holder, position);
+            }
+        });
+    }
+
+    @Test
+    public void itemViewTypeDoesNotAllocate() {
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                adapter.getItemViewType(iteration % SIZE);
+            }
+        });
+    }
+
+    @Test
+    public void getDataDoesNotAllocate() {
+        assertSame(adapter.getData(), adapter.getData());
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                adapter.getData();
+            }
+        });
+    }
+
+    @Test
+    public void updateDoesNotAllocate() {
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                final int i = iteration % SIZE;
+                // alternates versions, so that each call changes item
+                adapter.addOrUpdate((iteration / SIZE) % 2 == 0 ? updates[i] : items[i]);
+            }
+        });
+    }
+
+    @Test
+    public void insertAndRemoveDoNotAllocate() {
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                final List<TestItem> insert = inserts.get(iteration % SIZE);
+
+                adapter.addOrUpdate(insert.get(0));
+                adapter.remove(insert);
+            }
+        });
+        assertEquals(SIZE, adapter.getItemCount());
+    }
+
+    @Test
+    public void insertAndRemoveViaKeysDoNotAllocate() {
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                final List<TestItem> insert = inserts.get(iteration % SIZE);
+
+                adapter.addOrUpdate(insert);
+                adapter.removeViaKeys(insert);
+            }
+        });
+        assertEquals(SIZE, adapter.getItemCount());
+    }
+
+    @Test
+    public void cachedDisplayModelDoesNotAllocate() {
+        adapter.setDisplayModelCache(SIZE, 0);
+
+        assertNoAllocations(new AllocationCounter.Operation() {
+            @Override
+            public void run(int iteration) {
+                adapter.getDisplayModel(iteration % SIZE);
+            }
+        });
+    }
+
+    private static void assertNoAllocations(AllocationCounter.Operation operation) {
+        assertEquals("Bytes allocated in steady state", 0L,
+                AllocationCounter.measure(operation, WARM_UP, ITERATIONS));
+    }
+
+}
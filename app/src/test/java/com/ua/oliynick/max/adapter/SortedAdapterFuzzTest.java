@@ -0,0 +1,374 @@
+package com.ua.oliynick.max.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * <p>
+ * Runs random workload against adapter and replays dispatched notifications
+ * with {@link NotificationRecorder}. After each operation shadow list must match
+ * the adapter's data set, data set must match reference model and section
+ * lookups must match section boundaries found by a scan.
+ * </p>
+ * <p>
+ * Number of operations and seed can be passed via {@code fuzz.operations} and
+ * {@code fuzz.seed} project properties, e.g. {@code ./gradlew test -Pfuzz.operations=1000000}
+ * for a stress run
+ * </p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SortedAdapterFuzzTest {
+
+    private static final int OPERATIONS = Integer.getInteger("fuzz.operations", 20_000);
+    private static final long SEED = Long.getLong("fuzz.seed", System.nanoTime());
+    // bounds data set size
+    private static final int KEYS = 400;
+    // several items share the same sort key
+    private static final int SORT_KEYS = 100;
+    private static final int GROUP_SIZE = 10;
+    private static final int SECTION_SIZE = 25;
+
+    private static final GroupKeyProvider<TestItem> GROUPS = new GroupKeyProvider<TestItem>() {
+        @Override
+        public long getGroupKey(TestItem item) {
+            return item.sortKey / GROUP_SIZE;
+        }
+    };
+
+    private static final GroupKeyProvider<TestItem> SECTIONS = new GroupKeyProvider<TestItem>() {
+        @Override
+        public long getGroupKey(TestItem item) {
+            return item.sortKey / SECTION_SIZE;
+        }
+    };
+
+    private Random random;
+    private TestAdapter adapter;
+    private NotificationRecorder recorder;
+    // reference model, key to the item adapter must hold
+    private Map<Long, TestItem> model;
+    // updates scheduled, but not flushed yet
+    private Map<Long, TestItem> pending;
+    private int version;
+    // whether notifications are replayed by recorder
+    private boolean observed;
+
+    @Before
+    public void setUp() {
+        random = new Random(SEED);
+        adapter = new TestAdapter(TestItem.ASCENDING);
+        recorder = new NotificationRecorder(adapter);
+        model = new HashMap<>();
+        pending = new HashMap<>();
+        observed = true;
+        adapter.registerAdapterDataObserver(recorder);
+        adapter.setSectionKeyProvider(SECTIONS);
+        // updates are flushed by the test only
+        adapter.setCoalescingWindow(TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Test
+    public void withoutObservers() {
+        // replaceAll swaps data set in without diffing
+        adapter.unregisterAdapterDataObserver(recorder);
+        observed = false;
+        run(false);
+    }
+
+    @Test
+    public void attachedAdapter() {
+        adapter.onAttachedToRecyclerView(new RecyclerView(RuntimeEnvironment.application));
+        run(false);
+        assertTrue("Workload didn't produce moves", OPERATIONS < 1000 || recorder.getMoved() > 0);
+    }
+
+    @Test
+    public void compactStorage() {
+        adapter = new TestAdapter(TestItem.ASCENDING) {
+            @Override
+            protected List<TestItem> createList() {
+                return new CompactList<>();
+            }
+        };
+        recorder = new NotificationRecorder(adapter);
+        adapter.registerAdapterDataObserver(recorder);
+        adapter.setSectionKeyProvider(SECTIONS);
+        adapter.setCoalescingWindow(TimeUnit.HOURS.toMillis(1));
+        adapter.onAttachedToRecyclerView(new RecyclerView(RuntimeEnvironment.application));
+        run(false);
+    }
+
+    @Test
+    public void snapshotStorage() {
+        adapter = new TestAdapter(TestItem.ASCENDING) {
+            @Override
+            protected List<TestItem> createList() {
+                return new SnapshotList<>();
+            }
+        };
+        recorder = new NotificationRecorder(adapter);
+        adapter.registerAdapterDataObserver(recorder);
+        adapter.setSectionKeyProvider(SECTIONS);
+        adapter.setCoalescingWindow(TimeUnit.HOURS.toMillis(1));
+        adapter.onAttachedToRecyclerView(new RecyclerView(RuntimeEnvironment.application));
+        run(false);
+    }
+
+    @Test
+    public void groupedAdapter() {
+        adapter.onAttachedToRecyclerView(new RecyclerView(RuntimeEnvironment.application));
+        adapter.setGroupKeyProvider(GROUPS);
+        run(true);
+    }
+
+    private void run(boolean grouped) {
+        for (int op = 0; op < OPERATIONS; ++op) {
+            final int eventsBefore = recorder.getEvents();
+            final int maxEvents;
+
+            try {
+                maxEvents = step(grouped);
+
+                if (observed) {
+                    recorder.verify(visibleItems(grouped));
+                } else {
+                    assertEquals("Item count", visibleItems(grouped).size(), adapter.getItemCount());
+                }
+
+                verifyModel();
+                verifySections();
+            } catch (AssertionError | RuntimeException e) {
+                throw new AssertionError("Operation " + op + " failed, seed " + SEED, e);
+            }
+
+            final int events = recorder.getEvents() - eventsBefore;
+
+            if (events > maxEvents) {
+                fail("Operation " + op + " dispatched " + events + " notifications, expected at most "
+                        + maxEvents + ", seed " + SEED);
+            }
+        }
+    }
+
+    /**
+     * Performs random operation
+     *
+     * @return max number of notifications operation may dispatch
+     */
+    private int step(boolean grouped) {
+        final int dice = random.nextInt(100);
+
+        if (dice < 30) {
+            final TestItem item = newItem();
+
+            adapter.addOrUpdate(item);
+            putIntoModel(item);
+            return 1;
+        }
+
+        if (dice < 45) {
+            final List<TestItem> items = new ArrayList<>();
+
+            for (int i = random.nextInt(10); i >= 0; --i) {
+                final TestItem item = newItem();
+
+                items.add(item);
+                putIntoModel(item);
+            }
+
+            adapter.addOrUpdate(items);
+            return items.size();
+        }
+
+        if (dice < 60) {
+            final List<TestItem> items = pickItems();
+
+            adapter.remove(items);
+            removeFromModel(items);
+            return items.size();
+        }
+
+        if (dice < 75) {
+            final List<TestItem> items = pickItems();
+            // key of an absent item shouldn't affect data set
+            items.add(new TestItem(KEYS + random.nextInt(KEYS), 0, 0));
+            adapter.removeViaKeys(items);
+            removeFromModel(items);
+            return items.size();
+        }
+
+        if (dice < 80) {
+            final int oldSize = adapter.getData().size();
+            final List<TestItem> items = new ArrayList<>();
+            final Map<Long, TestItem> removed = new HashMap<>(model);
+
+            model.clear();
+
+            for (int i = random.nextInt(KEYS / 2); i >= 0; --i) {
+                final TestItem item = newItem();
+
+                items.add(item);
+                model.put(item.key, item);
+            }
+
+            adapter.replaceAll(items);
+            // removal by replacement cancels pending updates as well
+            removed.keySet().removeAll(model.keySet());
+            pending.keySet().removeAll(removed.keySet());
+            return oldSize + items.size();
+        }
+
+        if (dice < 83) {
+            adapter.setComparator(adapter.getComparator() == TestItem.ASCENDING
+                    ? TestItem.DESCENDING : TestItem.ASCENDING);
+            return 1;
+        }
+
+        if (dice < 88) {
+            // scheduled update may change sort position
+            for (int i = random.nextInt(3); i >= 0; --i) {
+                final int key = random.nextInt(KEYS);
+                final TestItem item = new TestItem(key, random.nextInt(SORT_KEYS), ++version);
+
+                adapter.scheduleAddOrUpdate(item);
+                pending.put(item.key, item);
+            }
+
+            return 0;
+        }
+
+        if (dice < 91) {
+            final int updates = pending.size();
+
+            adapter.flushPendingUpdates();
+
+            for (final TestItem item : pending.values()) {
+                putIntoModel(item);
+            }
+
+            pending.clear();
+            // moved item is also changed
+            return 2 * updates;
+        }
+
+        if (dice < 96 && grouped) {
+            adapter.toggleGroup(random.nextInt(SORT_KEYS / GROUP_SIZE));
+            return 1;
+        }
+        // equal item mustn't trigger any notification
+        final List<TestItem> data = adapter.getData();
+
+        if (!data.isEmpty()) {
+            final TestItem item = data.get(random.nextInt(data.size()));
+
+            adapter.addOrUpdate(new TestItem(item.key, item.sortKey, item.version));
+        }
+
+        return 0;
+    }
+
+    private TestItem newItem() {
+        final int key = random.nextInt(KEYS);
+        final TestItem current = model.get((long) key);
+        // addOrUpdate doesn't move items, sort
+        // position is changed by scheduled updates only
+        return new TestItem(key, current == null ? key % SORT_KEYS : current.sortKey, ++version);
+    }
+
+    private List<TestItem> pickItems() {
+        final List<TestItem> data = adapter.getData();
+        final List<TestItem> items = new ArrayList<>();
+
+        for (int i = data.isEmpty() ? 0 : random.nextInt(5); i > 0; --i) {
+            items.add(data.get(random.nextInt(data.size())));
+        }
+        // the same item can be picked twice
+        return new ArrayList<>(new LinkedHashSet<>(items));
+    }
+
+    private void putIntoModel(TestItem item) {
+        final TestItem current = model.get(item.key);
+
+        if (!item.equals(current)) {
+            model.put(item.key, item);
+        }
+    }
+
+    private void removeFromModel(List<TestItem> items) {
+        for (final TestItem item : items) {
+            model.remove(item.key);
+            // removal cancels pending update
+            pending.remove(item.key);
+        }
+    }
+
+    private void verifyModel() {
+        final List<TestItem> data = adapter.getData();
+
+        assertEquals("Data set size", model.size(), data.size());
+
+        for (int i = 0; i < data.size(); ++i) {
+            final TestItem item = data.get(i);
+
+            assertSame("Item with key " + item.key, model.get(item.key), item);
+            assertTrue("Data set isn't sorted at position " + i,
+                    i == 0 || adapter.getComparator().compare(data.get(i - 1), item) <= 0);
+        }
+    }
+
+    private void verifySections() {
+        final List<TestItem> data = adapter.getData();
+        int start = 0;
+
+        for (int i = 0; i < data.size(); ++i) {
+            if (SECTIONS.getGroupKey(data.get(i)) != SECTIONS.getGroupKey(data.get(start))) {
+                start = i;
+            }
+
+            assertEquals("Section start for position " + i, start, adapter.getSectionStart(i));
+            assertEquals("Section key for position " + i, SECTIONS.getGroupKey(data.get(i)), adapter.getSectionKey(i));
+        }
+    }
+
+    private List<TestItem> visibleItems(boolean grouped) {
+        final List<TestItem> data = adapter.getData();
+
+        if (!grouped) {
+            return data;
+        }
+
+        final List<TestItem> visible = new ArrayList<>();
+
+        for (int i = 0; i < data.size(); ++i) {
+            final long group = GROUPS.getGroupKey(data.get(i));
+            final boolean first = i == 0 || GROUPS.getGroupKey(data.get(i - 1)) != group;
+
+            if (first || adapter.isGroupExpanded(group)) {
+                visible.add(data.get(i));
+            }
+        }
+
+        return visible;
+    }
+
+}
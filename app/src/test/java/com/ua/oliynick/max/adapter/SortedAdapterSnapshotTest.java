@@ -0,0 +1,140 @@
+package com.ua.oliynick.max.adapter;
+
+import com.ua.oliynick.max.adapter.util.BackgroundExecutors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that snapshots submitted via {@link SortedAdapter#submitSnapshot(List)} are
+ * dispatched consistently with changes made on the main thread while diff is calculated.
+ * Background work is awaited explicitly, then results posted to the main looper are run
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SortedAdapterSnapshotTest {
+
+    private TestAdapter adapter;
+    private NotificationRecorder recorder;
+
+    @Before
+    public void setUp() {
+        adapter = new TestAdapter(TestItem.ASCENDING);
+        recorder = new NotificationRecorder(adapter);
+        adapter.registerAdapterDataObserver(recorder);
+        adapter.replaceAll(items(0, 50, 1));
+        recorder.verify(adapter.getData());
+    }
+
+    @Test
+    public void snapshotIsDispatched() throws Exception {
+        final List<TestItem> snapshot = items(25, 100, 2);
+
+        adapter.submitSnapshot(snapshot);
+        // nothing changes until result is dispatched
+        assertEquals(50, adapter.getData().size());
+        awaitSnapshot();
+        verify(snapshot, TestItem.ASCENDING);
+    }
+
+    @Test
+    public void newerSnapshotWins() throws Exception {
+        final List<TestItem> newer = items(10, 30, 3);
+
+        adapter.submitSnapshot(items(40, 80, 2));
+        awaitBackground();
+        // result of the first snapshot is already posted
+        adapter.submitSnapshot(newer);
+        awaitSnapshot();
+        verify(newer, TestItem.ASCENDING);
+    }
+
+    @Test
+    public void itemAddedBeforeDispatch() throws Exception {
+        final List<TestItem> snapshot = items(25, 100, 2);
+
+        adapter.submitSnapshot(snapshot);
+        awaitBackground();
+        adapter.addOrUpdate(new TestItem(1_000, 1_000, 1));
+        adapter.addOrUpdate(new TestItem(30, 30, 5));
+        recorder.verify(adapter.getData());
+        // snapshot replaces whole data set, so both items are overwritten
+        awaitSnapshot();
+        verify(snapshot, TestItem.ASCENDING);
+    }
+
+    @Test
+    public void comparatorChangedBeforeDispatch() throws Exception {
+        final List<TestItem> snapshot = items(25, 100, 2);
+
+        adapter.submitSnapshot(snapshot);
+        awaitBackground();
+        adapter.setComparator(TestItem.DESCENDING);
+        recorder.verify(adapter.getData());
+        awaitSnapshot();
+        verify(snapshot, TestItem.DESCENDING);
+    }
+
+    @Test
+    public void replaceAllSupersedesSnapshot() throws Exception {
+        final List<TestItem> items = items(60, 70, 3);
+
+        adapter.submitSnapshot(items(25, 100, 2));
+        awaitBackground();
+        adapter.replaceAll(items);
+        recorder.verify(adapter.getData());
+        awaitSnapshot();
+        verify(items, TestItem.ASCENDING);
+    }
+
+    /**
+     * @return items with keys in range [from, to), sort key matches key, so order is unambiguous
+     */
+    private static List<TestItem> items(int from, int to, int version) {
+        final List<TestItem> items = new ArrayList<>();
+        // unsorted on purpose
+        for (int key = to - 1; key >= from; --key) {
+            items.add(new TestItem(key, key, version));
+        }
+
+        return items;
+    }
+
+    private void verify(List<TestItem> snapshot, Comparator<TestItem> comparator) {
+        final List<TestItem> expected = new ArrayList<>(snapshot);
+
+        Collections.sort(expected, comparator);
+        assertEquals(expected, adapter.getData());
+        recorder.verify(expected);
+    }
+
+    /**
+     * Waits for background diff and dispatches its result
+     */
+    private static void awaitSnapshot() throws ExecutionException, InterruptedException {
+        awaitBackground();
+        ShadowLooper.runUiThreadTasks();
+    }
+
+    private static void awaitBackground() throws ExecutionException, InterruptedException {
+        // serial executor runs tasks in submission order
+        BackgroundExecutors.serial().submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.ua.oliynick.max.adapter;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Adapter without headers, so data and adapter positions are the same
+ */
+class TestAdapter extends SortedAdapter<TestItem> {
+
+    static final class ItemViewHolder extends RecyclerView.ViewHolder {
+
+        TestItem bound;
+
+        ItemViewHolder(View itemView) {
+            super(itemView);
+        }
+    }
+
+    static final class ItemViewHolderAdapter extends ViewHolderAdapter<TestItem> {
+
+        @Override
+        protected boolean canHandle(int position, @NotNull SortedAdapter<TestItem> adapter) {
+            return true;
+        }
+
+        @Override
+        protected void onBindViewHolder(@NotNull RecyclerView.ViewHolder holder, @NotNull List<Object> payload, int position, @NotNull SortedAdapter<TestItem> adapter) {
+            onBindViewHolder(holder, position, adapter);
+        }
+
+        @Override
+        protected void onBindViewHolder(@NotNull RecyclerView.ViewHolder holder, int position, @NotNull SortedAdapter<TestItem> adapter) {
+            ((ItemViewHolder) holder).bound = adapter.getItem(position);
+        }
+
+        @NotNull
+        @Override
+        protected RecyclerView.ViewHolder onCreateViewHolder(@NotNull ViewGroup parent) {
+            return new ItemViewHolder(new View(parent.getContext()));
+        }
+    }
+
+    TestAdapter(Comparator<? super TestItem> comparator) {
+        this(comparator, new ItemViewHolderAdapter());
+    }
+
+    TestAdapter(Comparator<? super TestItem> comparator, ViewHolderAdapter<TestItem> viewHolder) {
+        super(comparator, viewHolder);
+    }
+
+    @Override
+    protected int getAdapterOffset(int dataSetPosition, @NotNull TestItem item) {
+        return 0;
+    }
+
+    @Override
+    protected int getDataOffset(int position) {
+        return 0;
+    }
+
+    @Override
+    public int getItemCount() {
+        return getVisibleItemCount();
+    }
+}
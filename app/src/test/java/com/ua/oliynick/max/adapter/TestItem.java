@@ -0,0 +1,63 @@
+package com.ua.oliynick.max.adapter;
+
+import java.util.Comparator;
+
+/**
+ * Item used by adapter tests, items are ordered by sort key,
+ * several items can share the same sort key
+ */
+final class TestItem implements HasKey {
+
+    static final Comparator<TestItem> ASCENDING = new Comparator<TestItem>() {
+        @Override
+        public int compare(TestItem o1, TestItem o2) {
+            return o1.sortKey < o2.sortKey ? -1 : (o1.sortKey == o2.sortKey ? 0 : 1);
+        }
+    };
+
+    static final Comparator<TestItem> DESCENDING = new Comparator<TestItem>() {
+        @Override
+        public int compare(TestItem o1, TestItem o2) {
+            return ASCENDING.compare(o2, o1);
+        }
+    };
+
+    final long key;
+    final int sortKey;
+    final int version;
+
+    TestItem(long key, int sortKey, int version) {
+        this.key = key;
+        this.sortKey = sortKey;
+        this.version = version;
+    }
+
+    @Override
+    public long getViewId() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final TestItem that = (TestItem) o;
+
+        return key == that.key && sortKey == that.sortKey && version == that.version;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (key ^ (key >>> 32));
+
+        result = 31 * result + sortKey;
+        result = 31 * result + version;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TestItem{key=" + key + ", sortKey=" + sortKey + ", version=" + version + '}';
+    }
+}
@@ -0,0 +1,245 @@
+package com.ua.oliynick.max.adapter;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks search results of {@link TextSearchIndex} after mutations and
+ * queries running concurrently with mutations
+ */
+public class TextSearchIndexTest {
+
+    private static final class Doc implements HasKey {
+
+        final long key;
+        final int sortKey;
+        final String text;
+
+        Doc(long key, int sortKey, String text) {
+            this.key = key;
+            this.sortKey = sortKey;
+            this.text = text;
+        }
+
+        @Override
+        public long getViewId() {
+            return key;
+        }
+
+        @Override
+        public String toString() {
+            return "Doc{key=" + key + ", text=" + text + '}';
+        }
+    }
+
+    private static final Comparator<Doc> ASCENDING = new Comparator<Doc>() {
+        @Override
+        public int compare(Doc o1, Doc o2) {
+            return o1.sortKey < o2.sortKey ? -1 : (o1.sortKey == o2.sortKey ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Doc> DESCENDING = new Comparator<Doc>() {
+        @Override
+        public int compare(Doc o1, Doc o2) {
+            return ASCENDING.compare(o2, o1);
+        }
+    };
+
+    private static final TextExtractor<Doc> TEXT = new TextExtractor<Doc>() {
+        @NotNull
+        @Override
+        public String getSearchText(@NotNull Doc item) {
+            return item.text;
+        }
+    };
+
+    private TextSearchIndex<Doc> index;
+
+    @Before
+    public void setUp() {
+        index = new TextSearchIndex<>(TEXT, ASCENDING);
+    }
+
+    @Test
+    public void trigramIntersection() {
+        final Doc applePie = put(1, 1, "Apple pie");
+        final Doc pineapple = put(2, 2, "Pineapple");
+        final Doc pieChart = put(3, 3, "pie chart");
+        // contains both trigrams of "abcd", but not the query itself
+        put(4, 4, "abcxbcd");
+
+        assertEquals(Arrays.asList(applePie, pineapple), index.search("apple"));
+        assertEquals(Arrays.asList(applePie, pieChart), index.search("PIE"));
+        assertEquals(Collections.singletonList(applePie), index.search("le pi"));
+        assertEquals(Collections.emptyList(), index.search("abcd"));
+        assertEquals(Collections.emptyList(), index.search("xyz"));
+    }
+
+    @Test
+    public void shortQueryFallsBackToScan() {
+        final Doc apple = put(1, 1, "apple");
+        final Doc banana = put(2, 2, "banana");
+        final Doc cherry = put(3, 3, "cherry");
+
+        assertEquals(Arrays.asList(apple, banana), index.search("a"));
+        assertEquals(Collections.singletonList(banana), index.search("NA"));
+        assertEquals(Arrays.asList(apple, banana, cherry), index.search(""));
+        assertEquals(Collections.emptyList(), index.search("z"));
+    }
+
+    @Test
+    public void changedTextIsReindexed() {
+        put(1, 1, "red car");
+
+        final Doc updated = put(1, 1, "blue car");
+
+        assertEquals(Collections.emptyList(), index.search("red"));
+        assertEquals(Collections.singletonList(updated), index.search("blue"));
+        // item with the same text replaces the old one in results
+        final Doc same = put(1, 1, "blue car");
+
+        assertEquals(Collections.singletonList(same), index.search("car"));
+    }
+
+    @Test
+    public void removedItemLeavesPostingSets() {
+        put(1, 1, "unique words");
+        put(2, 2, "other text");
+        index.remove(1);
+        // stale key in a posting set would produce a candidate without entry
+        assertEquals(Collections.emptyList(), index.search("unique words"));
+        assertEquals(Collections.emptyList(), index.search("que"));
+
+        final Doc readded = put(3, 3, "unique words");
+
+        assertEquals(Collections.singletonList(readded), index.search("unique"));
+        index.remove(42);
+        assertEquals(1, index.search("other").size());
+    }
+
+    @Test
+    public void replaceAllDropsStaleEntries() {
+        final List<Doc> docs = new ArrayList<>();
+
+        for (int i = 0; i < 10; ++i) {
+            docs.add(put(i, i, "document number " + i));
+        }
+
+        final Doc changed = new Doc(3, 3, "changed document");
+
+        index.replaceAll(Arrays.asList(docs.get(1), changed, docs.get(5)));
+
+        assertEquals(Arrays.asList(docs.get(1), changed, docs.get(5)), index.search("doc"));
+        assertEquals(Collections.emptyList(), index.search("number 7"));
+        assertEquals(Collections.emptyList(), index.search("number 3"));
+        assertEquals(Collections.singletonList(changed), index.search("changed"));
+        assertEquals(3, index.search("").size());
+    }
+
+    @Test
+    public void resultsFollowComparator() {
+        final List<Doc> ascending = new ArrayList<>();
+
+        for (int i = 0; i < 20; ++i) {
+            // inserted out of sort order
+            ascending.add(put(i, (i * 7) % 20, "item " + i));
+        }
+
+        Collections.sort(ascending, ASCENDING);
+        assertEquals(ascending, index.search("item"));
+
+        index.setComparator(DESCENDING);
+        Collections.reverse(ascending);
+        assertEquals(ascending, index.search("item"));
+        assertEquals(ascending, index.search("i"));
+    }
+
+    @Test
+    public void queryRunsConcurrentlyWithMutations() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicBoolean done = new AtomicBoolean();
+
+        try {
+            final Future<Integer> queries = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int count = 0;
+
+                    while (!done.get()) {
+                        for (final String query : new String[]{"shared", "sh", "text 1"}) {
+                            verifyResult(index.search(query), query.toLowerCase(Locale.ENGLISH));
+                            ++count;
+                        }
+                    }
+
+                    return count;
+                }
+            });
+
+            final Random random = new Random(42);
+            // the main thread keeps mutating index while queries run
+            for (int i = 0; i < 50_000; ++i) {
+                final int key = random.nextInt(200);
+                final int dice = random.nextInt(10);
+
+                if (dice < 6) {
+                    index.put(new Doc(key, random.nextInt(100), "Shared text " + random.nextInt(1000)));
+                } else if (dice < 9) {
+                    index.remove(key);
+                } else {
+                    final List<Doc> docs = new ArrayList<>();
+
+                    for (int j = random.nextInt(50); j >= 0; --j) {
+                        docs.add(new Doc(random.nextInt(200) + 1000L * j, random.nextInt(100), "shared " + j));
+                    }
+
+                    index.replaceAll(docs);
+                }
+            }
+
+            done.set(true);
+            assertTrue("Queries didn't run", queries.get() > 0);
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+    }
+
+    private Doc put(long key, int sortKey, String text) {
+        final Doc doc = new Doc(key, sortKey, text);
+
+        index.put(doc);
+        return doc;
+    }
+
+    private static void verifyResult(List<Doc> result, String query) {
+        for (int i = 0; i < result.size(); ++i) {
+            final Doc doc = result.get(i);
+
+            assertNotNull("Null item at " + i, doc);
+            assertTrue(doc + " doesn't match " + query, doc.text.toLowerCase(Locale.ENGLISH).contains(query));
+            // comparator isn't changed by the test
+            assertTrue("Result isn't sorted at " + i, i == 0 || ASCENDING.compare(result.get(i - 1), doc) <= 0);
+        }
+    }
+
+}
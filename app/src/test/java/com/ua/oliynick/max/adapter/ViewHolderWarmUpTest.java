@@ -0,0 +1,210 @@
+package com.ua.oliynick.max.adapter;
+
+import android.os.Looper;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.ua.oliynick.max.adapter.util.BackgroundExecutors;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * Checks that view holders created in advance reach {@link RecyclerView.RecycledViewPool}
+ * and that warm up stops once adapter is detached.
+ * </p>
+ * <p>
+ * Background work is awaited explicitly, then results posted to the main looper are run.
+ * Idle handlers aren't run by the main looper in tests, so they are invoked directly
+ * </p>
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class ViewHolderWarmUpTest {
+
+    // the only view type of the adapter
+    private static final int VIEW_TYPE = 0;
+    // guards against idle handler which never finishes
+    private static final int MAX_IDLE_CALLS = 1000;
+
+    private WarmUpViewHolderAdapter viewHolderAdapter;
+    private TestAdapter adapter;
+    private RecyclerView recyclerView;
+
+    @Before
+    public void setUp() {
+        viewHolderAdapter = new WarmUpViewHolderAdapter();
+        adapter = new TestAdapter(TestItem.ASCENDING, viewHolderAdapter);
+        recyclerView = new RecyclerView(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void holdersReachPoolWhenIdle() throws Exception {
+        recyclerView.setAdapter(adapter);
+
+        final ViewHolderWarmUp warmUp = startWarmUp(3);
+
+        assertEquals("Pool is seeded on idle only", 0, countPooled());
+        runIdle(warmUp);
+        assertEquals(3, viewHolderAdapter.created.get());
+        assertEquals(3, countPooled());
+    }
+
+    @Test
+    public void poolCapacityIsRaised() throws Exception {
+        recyclerView.setAdapter(adapter);
+        // default pool capacity is 5
+        runIdle(startWarmUp(8));
+        assertEquals(8, countPooled());
+    }
+
+    @Test
+    public void fallbackToMainThread() throws Exception {
+        viewHolderAdapter.mainThreadOnly = true;
+        recyclerView.setAdapter(adapter);
+        runIdle(startWarmUp(2));
+        assertEquals("Background attempts must fail", 2, viewHolderAdapter.failed.get());
+        assertEquals(2, viewHolderAdapter.created.get());
+        assertEquals(2, countPooled());
+    }
+
+    @Test
+    public void adapterSwapCancelsWarmUp() throws Exception {
+        recyclerView.setAdapter(adapter);
+
+        final ViewHolderWarmUp warmUp = startWarmUp(3);
+
+        recyclerView.setAdapter(new TestAdapter(TestItem.ASCENDING));
+        assertFalse("Idle handler must be removed", warmUp.queueIdle());
+        assertEquals(0, countPooled());
+    }
+
+    @Test
+    public void detachCancelsWarmUp() throws Exception {
+        viewHolderAdapter.warmUpCount = 3;
+        viewHolderAdapter.gate = new CountDownLatch(1);
+        // warm up is started by adapter itself
+        recyclerView.setAdapter(adapter);
+        assertTrue("Warm up didn't start",
+                viewHolderAdapter.entered.await(10, TimeUnit.SECONDS));
+        recyclerView.setAdapter(null);
+        viewHolderAdapter.gate.countDown();
+        awaitInflation();
+        ShadowLooper.runUiThreadTasks();
+        assertEquals("Creation must stop after detach", 1, viewHolderAdapter.created.get());
+        assertEquals(0, countPooled());
+    }
+
+    private ViewHolderWarmUp startWarmUp(int count) throws ExecutionException, InterruptedException {
+        final ViewHolderWarmUp warmUp = new ViewHolderWarmUp(recyclerView, adapter);
+
+        warmUp.start(new int[]{VIEW_TYPE}, new int[]{count});
+        awaitInflation();
+        ShadowLooper.runUiThreadTasks();
+        return warmUp;
+    }
+
+    private int countPooled() {
+        final RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        int count = 0;
+
+        while (pool.getRecycledView(VIEW_TYPE) != null) {
+            ++count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Invokes idle handler until it asks to be removed
+     */
+    private static void runIdle(ViewHolderWarmUp warmUp) {
+        for (int i = 0; i < MAX_IDLE_CALLS; ++i) {
+            if (!warmUp.queueIdle()) {
+                return;
+            }
+        }
+
+        throw new AssertionError("Idle handler wasn't removed after " + MAX_IDLE_CALLS + " calls");
+    }
+
+    private static void awaitInflation() throws ExecutionException, InterruptedException {
+        // inflation executor runs tasks in submission order
+        BackgroundExecutors.inflation().submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    private static final class WarmUpViewHolderAdapter extends ViewHolderAdapter<TestItem> {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile int warmUpCount;
+        // emulates views which require looper, e.g. ones creating handlers
+        volatile boolean mainThreadOnly;
+        // blocks creation until opened
+        volatile CountDownLatch gate;
+
+        @Override
+        protected boolean canHandle(int position, @NotNull SortedAdapter<TestItem> adapter) {
+            return true;
+        }
+
+        @Override
+        protected void onBindViewHolder(@NotNull RecyclerView.ViewHolder holder, @NotNull List<Object> payload, int position, @NotNull SortedAdapter<TestItem> adapter) {
+        }
+
+        @Override
+        protected void onBindViewHolder(@NotNull RecyclerView.ViewHolder holder, int position, @NotNull SortedAdapter<TestItem> adapter) {
+        }
+
+        @NotNull
+        @Override
+        protected RecyclerView.ViewHolder onCreateViewHolder(@NotNull ViewGroup parent) {
+            if (mainThreadOnly && Looper.myLooper() != Looper.getMainLooper()) {
+                failed.incrementAndGet();
+                throw new IllegalStateException("Can't create handler inside thread that has not called Looper.prepare()");
+            }
+
+            entered.countDown();
+
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            created.incrementAndGet();
+            return new TestAdapter.ItemViewHolder(new View(parent.getContext()));
+        }
+
+        @Override
+        protected int getWarmUpCount() {
+            return warmUpCount;
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.ua.oliynick.max.adapter.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Sorts arrays which are large enough to be split into chunks and compares
+ * results with {@link Arrays#sort(Object[], Comparator)}, which is stable as well
+ */
+public class ParallelMergeSortTest {
+
+    private static final class Item {
+
+        final int sortKey;
+        // position in source array, reveals unstable sorting
+        final int index;
+
+        Item(int sortKey, int index) {
+            this.sortKey = sortKey;
+            this.index = index;
+        }
+    }
+
+    private static final Comparator<Item> BY_SORT_KEY = new Comparator<Item>() {
+        @Override
+        public int compare(Item o1, Item o2) {
+            return o1.sortKey < o2.sortKey ? -1 : (o1.sortKey == o2.sortKey ? 0 : 1);
+        }
+    };
+
+    private static final int[] SIZES = {
+            ParallelMergeSort.MIN_PARALLEL_SIZE,
+            ParallelMergeSort.MIN_PARALLEL_SIZE * 3 + 1,
+            100_003
+    };
+
+    private final Random random = new Random(42);
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void twoChunks() {
+        check(2);
+    }
+
+    @Test
+    public void oddNumberOfRuns() {
+        check(3);
+    }
+
+    @Test
+    public void moreChunksThanThreads() {
+        check(7);
+    }
+
+    @Test
+    public void sortedAndReversedInput() {
+        final int n = ParallelMergeSort.MIN_PARALLEL_SIZE * 4;
+        final Item[] sorted = new Item[n];
+        final Item[] reversed = new Item[n];
+
+        for (int i = 0; i < n; ++i) {
+            sorted[i] = new Item(i / 10, i);
+            reversed[i] = new Item((n - i) / 10, i);
+        }
+
+        for (final Item[] source : Arrays.asList(sorted, reversed)) {
+            final Item[] expected = source.clone();
+            final Item[] actual = source.clone();
+
+            Arrays.sort(expected, BY_SORT_KEY);
+            ParallelMergeSort.sort(actual, BY_SORT_KEY, executor, 7);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    private void check(int parallelism) {
+        for (final int size : SIZES) {
+            // few distinct keys produce long runs of ties
+            for (final int distinctKeys : new int[]{1, 16, size}) {
+                final Item[] source = new Item[size];
+
+                for (int i = 0; i < size; ++i) {
+                    source[i] = new Item(random.nextInt(distinctKeys), i);
+                }
+
+                final Item[] expected = source.clone();
+                final Item[] actual = source.clone();
+
+                Arrays.sort(expected, BY_SORT_KEY);
+                ParallelMergeSort.sort(actual, BY_SORT_KEY, executor, parallelism);
+                assertArrayEquals("size " + size + ", parallelism " + parallelism + ", keys " + distinctKeys,
+                        expected, actual);
+            }
+        }
+    }
+
+}